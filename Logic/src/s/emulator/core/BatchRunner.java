@@ -0,0 +1,163 @@
+package s.emulator.core;
+
+import s.emulator.core.engine.ExecutionEngine;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs one program (expanded once to a fixed degree) over many input vectors in parallel.
+ * Input vector {@code v} assigns {@code v[i]} to {@code x(i+1)}, like {@link ExecutionManager#runSubprogram}.
+ *
+ * Inputs are pulled lazily from the stream in chunks and at most a bounded number of chunks are in
+ * flight, so results are streamed to the sink and millions of vectors never sit in memory at once.
+ * Each worker thread reuses a single ExecutionManager.
+ */
+public final class BatchRunner {
+
+    public static final class Result {
+        private final long index;
+        private final int y;
+        private final long cycles;
+        private final Map<String, Integer> vars;
+
+        Result(long index, int y, long cycles, Map<String, Integer> vars) {
+            this.index = index;
+            this.y = y;
+            this.cycles = cycles;
+            this.vars = vars;
+        }
+
+        /** Position of the input vector in the input stream. */
+        public long getIndex() { return index; }
+        public int getY() { return y; }
+        public long getCycles() { return cycles; }
+        /** Final variables (as {@code snapshotVars()}), or null unless {@link #setCollectVars} was enabled. */
+        public Map<String, Integer> getVars() { return vars; }
+    }
+
+    private final Program program;
+    private final ThreadLocal<ExecutionManager> workerState;
+    private ExecutionEngine engine = ExecutionEngine.INTERPRETER;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private boolean collectVars = false;
+    private boolean ordered = true;
+    private int chunkSize = 256;
+
+    public BatchRunner(Program program, int degree) {
+        this.program = program.expandToDegree(degree);
+        this.workerState = ThreadLocal.withInitial(() -> new ExecutionManager(this.program));
+    }
+
+    public Program getProgram() { return program; }
+
+    public void setEngine(ExecutionEngine engine) { this.engine = Objects.requireNonNull(engine); }
+    public void setPool(ForkJoinPool pool) { this.pool = Objects.requireNonNull(pool); }
+    public void setCollectVars(boolean collectVars) { this.collectVars = collectVars; }
+    /** Ordered (default): results reach the sink in input order. Unordered: as soon as their chunk completes. */
+    public void setOrdered(boolean ordered) { this.ordered = ordered; }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be >= 1");
+        this.chunkSize = chunkSize;
+    }
+
+    /** Runs every input vector; {@code sink} is only ever called from the calling thread. */
+    public void run(Stream<int[]> inputs, Consumer<Result> sink) {
+        int window = Math.max(2, pool.getParallelism() * 2);
+        Iterator<int[]> it = inputs.iterator();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Deque<Future<List<Result>>> queue = new ArrayDeque<>(); // ordered: in submission order
+        Set<Future<List<Result>>> pending = new HashSet<>();    // unordered: not taken yet
+        Collection<Future<List<Result>>> inFlight = ordered ? queue : pending;
+        try {
+            if (ordered) {
+                long index = 0;
+                while (it.hasNext()) {
+                    List<int[]> chunk = nextChunk(it);
+                    queue.add(pool.submit(chunkTask(index, chunk, cancelled)));
+                    index += chunk.size();
+                    if (queue.size() >= window) emit(queue.peek(), sink, queue);
+                }
+                while (!queue.isEmpty()) emit(queue.peek(), sink, queue);
+            } else {
+                CompletionService<List<Result>> done = new ExecutorCompletionService<>(pool);
+                long index = 0;
+                while (it.hasNext()) {
+                    List<int[]> chunk = nextChunk(it);
+                    inFlight.add(done.submit(chunkTask(index, chunk, cancelled)));
+                    index += chunk.size();
+                    if (inFlight.size() >= window) emit(take(done), sink, inFlight);
+                }
+                while (!inFlight.isEmpty()) emit(take(done), sink, inFlight);
+            }
+        } catch (RuntimeException | Error e) {
+            // a failed vector (or sink) ends the batch: stop the chunks still queued or running
+            cancelled.set(true);
+            inFlight.forEach(f -> f.cancel(true));
+            throw e;
+        }
+    }
+
+    /** Convenience for small batches: all results, in input order. */
+    public List<Result> runAll(List<int[]> inputs) {
+        List<Result> out = new ArrayList<>(inputs.size());
+        run(inputs.stream(), out::add);
+        return out;
+    }
+
+    private List<int[]> nextChunk(Iterator<int[]> it) {
+        List<int[]> chunk = new ArrayList<>(chunkSize);
+        while (it.hasNext() && chunk.size() < chunkSize) chunk.add(it.next());
+        return chunk;
+    }
+
+    private Callable<List<Result>> chunkTask(long firstIndex, List<int[]> chunk, AtomicBoolean cancelled) {
+        return () -> {
+            ExecutionManager em = workerState.get();
+            List<Result> out = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size() && !cancelled.get(); i++) {
+                int[] args = chunk.get(i);
+                em.reset();
+                for (int a = 0; a < args.length; a++) em.setVar("x" + (a + 1), args[a]);
+                long cycles;
+                try {
+                    cycles = engine.run(em);
+                } catch (RuntimeException | Error e) {
+                    cancelled.set(true); // siblings stop now, not when the caller gets to this chunk
+                    throw e;
+                }
+                out.add(new Result(firstIndex + i, em.getVar("y"), cycles,
+                        collectVars ? em.snapshotVars() : null));
+            }
+            return out;
+        };
+    }
+
+    private static Future<List<Result>> take(CompletionService<List<Result>> done) {
+        try {
+            return done.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batch results", e);
+        }
+    }
+
+    /** Waits for {@code f}, drops it from {@code inFlight} and hands its results to the sink. */
+    private static void emit(Future<List<Result>> f, Consumer<Result> sink, Collection<Future<List<Result>>> inFlight) {
+        List<Result> results;
+        try {
+            results = f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batch results", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch run failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        inFlight.remove(f);
+        results.forEach(sink);
+    }
+}
@@ -0,0 +1,148 @@
+package s.emulator.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Loads programs written by {@link BinaryProgramWriter}. The file is memory-mapped and read in place;
+ * string-table entries are decoded only when first referenced.
+ *
+ * Format (big-endian), version 1:
+ * <pre>
+ *   u4 magic "SBIN", u2 version
+ *   u4 string count, then per string: u4 byte length, UTF-8 bytes
+ *   u4 program name id
+ *   u4 symbol count, then the variable name id of every register slot, in slot order
+ *   u4 instruction count, then per instruction:
+ *      u4 opcode id, i4 label id (-1 = none), i4 S-Variable id (-1 = none),
+ *      u2 argument count, then (u4 name id, u4 value id) per argument,
+ *      i4 resolved jump target (a PC, Program.EXIT_PC or Program.NO_TARGET)
+ * </pre>
+ * Instructions are rebuilt through {@link OpcodeRegistry} as the file is read. The stored jump targets are
+ * used as they are, each only checked against its label's first definition, and the stored symbol table must
+ * match the rebuilt program's, so a stale or damaged file fails instead of running.
+ */
+public class BinaryProgramLoader {
+
+    public static final String EXTENSION = ".sbin";
+
+    static final int MAGIC = 0x5342494E; // "SBIN"
+    static final int VERSION = 1;
+
+    // Smallest instruction record: opcode, label, variable, argument count, target.
+    private static final int MIN_INSTRUCTION_BYTES = 4 + 4 + 4 + 2 + 4;
+
+    public Program load(File file) throws IOException {
+        if (file == null) throw new IllegalArgumentException("File is null.");
+        if (!file.exists()) throw new IllegalArgumentException("File not found: " + file.getAbsolutePath());
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return read(buf, file.getName());
+        }
+    }
+
+    /** Reads a program from {@code buf}'s position; {@code source} only names it in error messages. */
+    public Program read(ByteBuffer buf, String source) {
+        try {
+            if (buf.getInt() != MAGIC) throw corrupt(source, "not an S binary program");
+            int version = buf.getShort() & 0xFFFF;
+            if (version != VERSION) {
+                throw new IllegalArgumentException(source + ": unsupported binary format version " + version
+                        + " (expected " + VERSION + ")");
+            }
+            Strings strings = new Strings(buf, source);
+            String name = strings.get(buf.getInt());
+
+            int symbolCount = buf.getInt();
+            if (symbolCount < 0 || symbolCount > buf.remaining() / 4) throw corrupt(source, "bad symbol count " + symbolCount);
+            int[] symbolIds = new int[symbolCount];
+            for (int s = 0; s < symbolCount; s++) symbolIds[s] = buf.getInt();
+
+            int count = buf.getInt();
+            if (count < 0 || count > buf.remaining() / MIN_INSTRUCTION_BYTES) throw corrupt(source, "bad instruction count " + count);
+            List<Instruction> code = new ArrayList<>(count);
+            int[] targets = new int[count];
+            OpcodeRegistry opcodes = OpcodeRegistry.get();
+            for (int i = 0; i < count; i++) {
+                String opcode = strings.get(buf.getInt());
+                String label = strings.getOrNull(buf.getInt());
+                String variable = strings.getOrNull(buf.getInt());
+                int argCount = buf.getShort() & 0xFFFF;
+                Map<String, String> args = new HashMap<>();
+                for (int a = 0; a < argCount; a++) args.put(strings.get(buf.getInt()), strings.get(buf.getInt()));
+                targets[i] = buf.getInt();
+                try {
+                    code.add(opcodes.create(opcode, label, variable, args));
+                } catch (IllegalArgumentException e) {
+                    throw corrupt(source, "instruction #" + (i + 1) + ": " + e.getMessage());
+                }
+            }
+
+            Program program;
+            try {
+                program = new Program(name, code, targets);
+            } catch (IllegalArgumentException e) {
+                throw corrupt(source, e.getMessage());
+            }
+            SymbolTable symbols = program.symbols();
+            boolean same = symbols.size() == symbolCount;
+            for (int s = 0; same && s < symbolCount; s++) same = symbols.nameOf(s).equals(strings.get(symbolIds[s]));
+            if (!same) throw corrupt(source, "symbol table does not match the instructions");
+            return program;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw corrupt(source, "truncated file");
+        }
+    }
+
+    private static IllegalArgumentException corrupt(String source, String why) {
+        return new IllegalArgumentException(source + ": corrupt binary program (" + why + ")");
+    }
+
+    /** String table over the mapped bytes: offsets are indexed up front, strings decoded on first use. */
+    private static final class Strings {
+        private final ByteBuffer buf;
+        private final String source;
+        private final int[] offset;
+        private final int[] length;
+        private final String[] decoded;
+
+        Strings(ByteBuffer buf, String source) {
+            this.buf = buf;
+            this.source = source;
+            int n = buf.getInt();
+            if (n < 0 || n > buf.remaining() / 4) throw corrupt(source, "bad string count");
+            this.offset = new int[n];
+            this.length = new int[n];
+            this.decoded = new String[n];
+            for (int i = 0; i < n; i++) {
+                length[i] = buf.getInt();
+                if (length[i] < 0 || length[i] > buf.remaining()) {
+                    throw corrupt(source, "bad length " + length[i] + " of string #" + i);
+                }
+                offset[i] = buf.position();
+                buf.position(offset[i] + length[i]);
+            }
+        }
+
+        String get(int id) {
+            if (id < 0 || id >= decoded.length) throw corrupt(source, "bad string id " + id);
+            String s = decoded[id];
+            if (s == null) {
+                byte[] bytes = new byte[length[id]];
+                buf.get(offset[id], bytes);
+                decoded[id] = s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+
+        String getOrNull(int id) {
+            return id < 0 ? null : get(id);
+        }
+    }
+}
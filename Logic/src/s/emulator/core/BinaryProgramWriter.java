@@ -0,0 +1,77 @@
+package s.emulator.core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/** Writes a Program in the binary format read by {@link BinaryProgramLoader}. */
+public class BinaryProgramWriter {
+
+    public void write(Program program, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(program, out);
+        }
+    }
+
+    public void write(Program program, OutputStream target) throws IOException {
+        OpcodeRegistry opcodes = OpcodeRegistry.get();
+        List<Instruction> code = program.getInstructions();
+
+        // Intern every string first: the table precedes everything that refers to it.
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        int nameId = intern(ids, program.getName());
+        SymbolTable symbols = program.symbols();
+        int[] symbolIds = new int[symbols.size()];
+        for (int s = 0; s < symbolIds.length; s++) symbolIds[s] = intern(ids, symbols.nameOf(s));
+        String[] ops = new String[code.size()];
+        List<SortedMap<String, String>> args = new ArrayList<>(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            Instruction ins = code.get(i);
+            ops[i] = opcodes.opcodeOf(ins.getClass());
+            if (ops[i] == null) {
+                throw new IllegalArgumentException("Instruction #" + (i + 1) + " (" + ins.getClass().getName()
+                        + ") has no registered opcode");
+            }
+            intern(ids, ops[i]);
+            if (ins.getLabel() != null) intern(ids, ins.getLabel());
+            if (ins.xmlVariable() != null) intern(ids, ins.xmlVariable());
+            SortedMap<String, String> a = new TreeMap<>(ins.xmlArguments()); // sorted: same program, same bytes
+            for (Map.Entry<String, String> e : a.entrySet()) {
+                intern(ids, e.getKey());
+                intern(ids, e.getValue());
+            }
+            args.add(a);
+        }
+
+        DataOutputStream out = new DataOutputStream(target);
+        out.writeInt(BinaryProgramLoader.MAGIC);
+        out.writeShort(BinaryProgramLoader.VERSION);
+        out.writeInt(ids.size());
+        for (String s : ids.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(nameId);
+        out.writeInt(symbolIds.length);
+        for (int id : symbolIds) out.writeInt(id);
+        out.writeInt(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            Instruction ins = code.get(i);
+            out.writeInt(ids.get(ops[i]));
+            out.writeInt(ins.getLabel() == null ? -1 : ids.get(ins.getLabel()));
+            out.writeInt(ins.xmlVariable() == null ? -1 : ids.get(ins.xmlVariable()));
+            out.writeShort(args.get(i).size());
+            for (Map.Entry<String, String> e : args.get(i).entrySet()) {
+                out.writeInt(ids.get(e.getKey()));
+                out.writeInt(ids.get(e.getValue()));
+            }
+            out.writeInt(program.targetOf(i));
+        }
+        out.flush();
+    }
+
+    private static int intern(Map<String, Integer> ids, String s) {
+        return ids.computeIfAbsent(s, k -> ids.size());
+    }
+}
@@ -6,17 +6,32 @@ import java.util.function.Function;
 public class ExecutionManager {
 
     private final Program program;
-    private final Map<String, Integer> vars = new HashMap<>();
+    private final int[] regs;                                    // register file, indexed by SymbolTable slot
+    private final boolean[] assigned;                            // per slot: set through setVar (inputs, y)
+    private final Map<String, Integer> extraVars = new HashMap<>(); // names the program never mentions
     private int pc = 0;
     private long totalCycles = 0;
     private boolean running = true;
 
     public ExecutionManager(Program program) {
         this.program = program;
+        this.regs = new int[program.symbols().size()];
+        this.assigned = new boolean[regs.length];
         // Initialize y=0 and all z*=0 implicitly; x* default 0 unless user input sets them.
         setVar("y", 0);
     }
 
+    /** Back to the initial state (all variables 0, PC 0, no cycles) so the manager can be reused for another run. */
+    public void reset() {
+        Arrays.fill(regs, 0);
+        Arrays.fill(assigned, false);
+        extraVars.clear();
+        pc = 0;
+        totalCycles = 0;
+        running = true;
+        setVar("y", 0);
+    }
+
     public Program getProgram() {
         return program;
     }
@@ -49,35 +64,67 @@ public class ExecutionManager {
         totalCycles += Math.max(0, c);
     }
 
+    /** Value of operand {@code i} of the instruction at the current PC. */
+    public int getOperand(int i) {
+        return regs[program.operandSlot(pc, i)];
+    }
+
+    public void setOperand(int i, int value) {
+        regs[program.operandSlot(pc, i)] = Math.max(0, value);
+    }
+
+    /** The live register file (slots from {@code getProgram().symbols()}), for execution engines. */
+    public int[] registers() {
+        return regs;
+    }
+
+    // Name-based access: compatibility view over the register file.
     public int getVar(String name) {
-        return vars.getOrDefault(name, 0);
+        int slot = program.symbols().slotOf(name);
+        return slot >= 0 ? regs[slot] : extraVars.getOrDefault(name, 0);
     }
 
     public void setVar(String name, int value) {
-        vars.put(name, Math.max(0, value));
+        int slot = program.symbols().slotOf(name);
+        if (slot >= 0) {
+            regs[slot] = Math.max(0, value);
+            assigned[slot] = true;
+        } else {
+            extraVars.put(name, Math.max(0, value));
+        }
     }
 
+    /**
+     * y, the variables set through {@link #setVar} (inputs), and every other variable the run left nonzero,
+     * in display order. Work variables that end at 0 are left out.
+     */
     public Map<String, Integer> snapshotVars() {
+        SymbolTable symbols = program.symbols();
         Map<String, Integer> out = new LinkedHashMap<>();
-        out.put("y", getVar("y"));
-        // Collect x*
-        vars.keySet().stream()
-                .filter(k -> k.startsWith("x"))
-                .sorted(Comparator.comparingInt(ExecutionManager::suffixInt))
-                .forEach(k -> out.put(k, vars.get(k)));
-        // Collect z*
-        vars.keySet().stream()
-                .filter(k -> k.startsWith("z"))
-                .sorted(Comparator.comparingInt(ExecutionManager::suffixInt))
-                .forEach(k -> out.put(k, vars.get(k)));
-        // Include anything else (rare) in alpha order but after the above
-        vars.keySet().stream()
-                .filter(k -> !k.equals("y") && !k.startsWith("x") && !k.startsWith("z"))
-                .sorted()
-                .forEach(k -> out.put(k, vars.get(k)));
+        if (extraVars.isEmpty()) {
+            for (int s : symbols.displayOrder()) {
+                if (assigned[s] || regs[s] != 0) out.put(symbols.nameOf(s), regs[s]);
+            }
+            return out;
+        }
+        // Names the program never mentions (rare): sort them in with the program's own variables
+        List<String> names = new ArrayList<>(extraVars.keySet());
+        for (int s = 0; s < regs.length; s++) {
+            if (assigned[s] || regs[s] != 0) names.add(symbols.nameOf(s));
+        }
+        names.sort(SymbolTable.DISPLAY_ORDER);
+        for (String name : names) out.put(name, getVar(name));
         return out;
     }
 
+    /** Jump to the link-time resolved target of the instruction at the current PC. */
+    public void jumpToTarget() {
+        int target = program.targetOf(pc);
+        if (target == Program.EXIT_PC) { stop(); return; }
+        if (target < 0) throw new IllegalStateException("Instruction #" + (pc + 1) + " has no jump target");
+        setPC(target);
+    }
+
     public void jumpToLabel(String label) {
         if (label == null || label.isBlank()) throw new IllegalArgumentException("jumpToLabel: label is empty");
         if ("EXIT".equalsIgnoreCase(label)) { stop(); return; }
@@ -86,17 +133,15 @@ public class ExecutionManager {
         setPC(idx.getAsInt());
     }
 
-    private static int suffixInt(String s) {
-        try {
-            return Integer.parseInt(s.substring(1));
-        } catch (Exception e) {
-            return Integer.MAX_VALUE;
-        }
-    }
     public void addCycles(long c) {
         if (c > 0) totalCycles += c;
     }
 
+    /** Adds {@code delta}, which may be negative: cycles accounted outside this program (see Specializer). */
+    public void offsetCycles(long delta) {
+        totalCycles += delta;
+    }
+
     private Function<String, Program> functionResolver;
 
     public void setFunctionResolver(Function<String, Program> resolver) {
@@ -120,12 +165,33 @@ public class ExecutionManager {
         public long getCycles() { return cycles; }
     }
 
+    private SubprogramCache resultCache;
+
+    /** Memoize {@link #runSubprogram} results in {@code cache} (shared with child runs); null disables. */
+    public void setResultCache(SubprogramCache cache) {
+        this.resultCache = cache;
+    }
+
+    /** A fresh manager over {@code other} sharing this one's function resolver and result cache. */
+    public ExecutionManager derive(Program other) {
+        ExecutionManager child = new ExecutionManager(other);
+        child.setFunctionResolver(functionResolver);
+        child.setResultCache(resultCache);
+        return child;
+    }
+
     public RunOutcome runSubprogram(Program sub, List<Integer> args) {
-        ExecutionManager child = new ExecutionManager(sub);
+        if (resultCache != null) {
+            RunOutcome cached = resultCache.get(sub, args);
+            if (cached != null) return cached;
+        }
+        ExecutionManager child = derive(sub);
         for (int i = 0; i < args.size(); i++) {
             child.setVar("x" + (i + 1), args.get(i));
         }
         long childCycles = Interpreter.run(child);
-        return new RunOutcome(child.getVar("y"), childCycles);
+        RunOutcome outcome = new RunOutcome(child.getVar("y"), childCycles);
+        if (resultCache != null) resultCache.put(sub, args, outcome);
+        return outcome;
     }
 }
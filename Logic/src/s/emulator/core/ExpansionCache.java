@@ -0,0 +1,216 @@
+package s.emulator.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of expanded programs, keyed by the SHA-256 of the source file, the degree and
+ * {@link #EXPANDER_VERSION}, so a warm start skips both parsing and expansion. Entries are binary programs
+ * ({@link BinaryProgramWriter}) followed by the SHA-256 of their bytes, plus a small properties file per
+ * source holding its max degree.
+ *
+ * An entry whose digest doesn't match, or that {@link BinaryProgramLoader} rejects, is deleted and rebuilt.
+ * Writes are atomic renames, and the directory is trimmed to {@code maxBytes} by evicting the least
+ * recently used files (by modification time, which every hit refreshes), entries of older versions included.
+ */
+public final class ExpansionCache {
+
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    /** Bump whenever expansion output changes (templates, fresh naming, degrees): older entries stop matching. */
+    static final int EXPANDER_VERSION = 1;
+
+    private static final String ENTRY_SUFFIX = ".e" + EXPANDER_VERSION + ".v" + BinaryProgramLoader.VERSION
+            + BinaryProgramLoader.EXTENSION;
+    private static final String META_SUFFIX = ".e" + EXPANDER_VERSION + ".properties";
+    private static final int DIGEST_BYTES = 32; // SHA-256 trailer of every entry
+
+    private final Path dir;
+    private final long maxBytes;
+
+    public ExpansionCache(Path dir, long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /** ~/.intellis/expansions */
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".intellis", "expansions");
+    }
+
+    /** {@code source} (.xml or .sbin) expanded to {@code degree}, from the cache when possible. */
+    public Program load(File source, int degree) throws Exception {
+        String hash = sha256(source);
+        OptionalInt max = readMaxDegree(hash);
+        int d = Math.max(0, max.isPresent() ? Math.min(degree, max.getAsInt()) : degree);
+
+        Path entry = dir.resolve(hash + ".d" + d + ENTRY_SUFFIX);
+        Program cached = readEntry(entry);
+        if (cached != null) return cached;
+
+        Program program = ProgramFiles.load(source);
+        int maxDegree = program.maxExpansionDegree();
+        if (d > maxDegree) {
+            d = maxDegree;
+            entry = dir.resolve(hash + ".d" + d + ENTRY_SUFFIX);
+        }
+        Program expanded = program.expandToDegree(d);
+
+        Files.createDirectories(dir);
+        if (max.isEmpty()) writeMaxDegree(hash, maxDegree);
+        writeEntry(entry, expanded);
+        evict();
+        return expanded;
+    }
+
+    /** Max expansion degree of {@code source}, from the cache when possible. */
+    public int maxDegree(File source) throws Exception {
+        String hash = sha256(source);
+        OptionalInt max = readMaxDegree(hash);
+        if (max.isPresent()) return max.getAsInt();
+        int maxDegree = ProgramFiles.load(source).maxExpansionDegree();
+        Files.createDirectories(dir);
+        writeMaxDegree(hash, maxDegree);
+        return maxDegree;
+    }
+
+    private Program readEntry(Path entry) {
+        if (!Files.isRegularFile(entry)) return null;
+        try (FileChannel ch = FileChannel.open(entry, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < DIGEST_BYTES || size > Integer.MAX_VALUE) throw new IllegalArgumentException(entry + ": bad size");
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer body = buf.slice(0, (int) size - DIGEST_BYTES);
+            byte[] stored = new byte[DIGEST_BYTES];
+            buf.get((int) size - DIGEST_BYTES, stored);
+            MessageDigest md = newSha256();
+            md.update(body.duplicate());
+            if (!MessageDigest.isEqual(md.digest(), stored)) throw new IllegalArgumentException(entry + ": digest mismatch");
+            Program p = new BinaryProgramLoader().read(body, entry.getFileName().toString());
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis())); // LRU touch
+            return p;
+        } catch (IOException | IllegalArgumentException e) {
+            deleteQuietly(entry); // damaged or stale: rebuild below
+            return null;
+        }
+    }
+
+    private void writeEntry(Path entry, Program expanded) throws IOException {
+        Path tmp = Files.createTempFile(dir, "entry", ".tmp");
+        try {
+            MessageDigest md = newSha256();
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                new BinaryProgramWriter().write(expanded, new DigestOutputStream(out, md));
+                out.write(md.digest());
+            }
+            move(tmp, entry);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    private OptionalInt readMaxDegree(String hash) {
+        Path meta = dir.resolve(hash + META_SUFFIX);
+        if (!Files.isRegularFile(meta)) return OptionalInt.empty();
+        Properties props = new Properties();
+        try (Reader r = Files.newBufferedReader(meta)) {
+            props.load(r);
+            int max = Integer.parseInt(props.getProperty("maxDegree", "").trim());
+            if (max < 0) throw new NumberFormatException();
+            return OptionalInt.of(max);
+        } catch (IOException | NumberFormatException e) {
+            deleteQuietly(meta);
+            return OptionalInt.empty();
+        }
+    }
+
+    private void writeMaxDegree(String hash, int maxDegree) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("maxDegree", String.valueOf(maxDegree));
+        Path tmp = Files.createTempFile(dir, "meta", ".tmp");
+        try {
+            try (Writer w = Files.newBufferedWriter(tmp)) {
+                props.store(w, null);
+            }
+            move(tmp, dir.resolve(hash + META_SUFFIX));
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    /** Deletes least recently used files until the directory fits in {@code maxBytes}. */
+    private void evict() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.endsWith(BinaryProgramLoader.EXTENSION) || n.endsWith(".properties");
+            }).toList();
+        }
+        long total = 0;
+        Map<Path, long[]> info = new HashMap<>(); // {size, mtime}
+        for (Path p : files) {
+            try {
+                long[] i = {Files.size(p), Files.getLastModifiedTime(p).toMillis()};
+                info.put(p, i);
+                total += i[0];
+            } catch (IOException ignore) {
+                // removed concurrently
+            }
+        }
+        if (total <= maxBytes) return;
+        List<Path> byAge = new ArrayList<>(info.keySet());
+        byAge.sort(Comparator.comparingLong(p -> info.get(p)[1]));
+        for (Path p : byAge) {
+            if (total <= maxBytes) break;
+            deleteQuietly(p);
+            total -= info.get(p)[0];
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException ignore) {
+            // best effort
+        }
+    }
+
+    private static String sha256(File source) throws IOException {
+        if (source == null || !source.isFile()) {
+            throw new IllegalArgumentException("File not found: " + (source == null ? null : source.getAbsolutePath()));
+        }
+        MessageDigest md = newSha256();
+        try (InputStream in = new DigestInputStream(new BufferedInputStream(new FileInputStream(source)), md)) {
+            byte[] buf = new byte[64 * 1024];
+            while (in.read(buf) >= 0) { /* digest only */ }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import s.emulator.core.expansion.ExpansionContext;
 
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalInt;
 
 public interface Instruction {
 
@@ -15,10 +16,48 @@ public interface Instruction {
 
     Instruction buildFromXml(String label, String variable, Map<String,String> args);
 
+    /** {@code <S-Variable>} of this instruction: with {@link #xmlArguments()}, the inverse of {@link #buildFromXml}. */
+    default String xmlVariable() {
+        List<String> vars = getVariables();
+        return vars.isEmpty() ? null : vars.get(0);
+    }
+
+    /** {@code <S-Instruction-Arguments>} of this instruction, by argument name; none by default. */
+    default Map<String,String> xmlArguments() { return Map.of(); }
+
+    // Operand metadata: lets loaders, printers and analyses inspect instructions without reflection.
+
+    /** Variables this instruction operates on, in operand order (see {@link ExecutionManager#getOperand(int)}). */
+    default List<String> getVariables() { return List.of(); }
+
+    /** Variables whose value this instruction depends on. */
+    default List<String> getReadVariables() { return getVariables(); }
+
+    /** Variables this instruction may change. */
+    default List<String> getWrittenVariables() { return List.of(); }
+
+    /** Label this instruction may jump to ("EXIT" included), or null if it never jumps. */
+    default String getTargetLabel() { return null; }
+
+    /** The instruction's constant operand (e.g. k in {@code V <- k}), if it has one. */
+    default OptionalInt getConstant() { return OptionalInt.empty(); }
+
     default boolean isBasic() { return true; }
 
     default List<Instruction> expand(ExpansionContext ctx) { return List.of(this); }
 
+    /**
+     * Same instruction with its label, operands ({@link #getVariables()} order) and jump target replaced,
+     * constants kept. Lets expansion templates be instantiated by renaming; unsupported by default.
+     */
+    default Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support renaming");
+    }
+
+    /**
+     * Expansion rounds until this instruction is all basic. Built-in synthetic instructions override this
+     * with a constant derived from their expansion shape; the default trial-expands once per call.
+     */
     default int degree() {
         if (isBasic()) return 0;
         // expand once with a dummy context; specs guarantee no cycles
@@ -0,0 +1,11 @@
+package s.emulator.core;
+
+/**
+ * Source of opcodes for {@link OpcodeRegistry}. Built-in instructions are always registered; extension
+ * families are discovered with {@link java.util.ServiceLoader}, by listing the implementation class in
+ * {@code META-INF/services/s.emulator.core.OpcodeProvider}.
+ */
+public interface OpcodeProvider {
+
+    void register(OpcodeRegistry.Registrar registrar);
+}
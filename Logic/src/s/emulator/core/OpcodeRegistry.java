@@ -0,0 +1,70 @@
+package s.emulator.core;
+
+import s.emulator.core.instructions.BuiltinOpcodes;
+
+import java.util.*;
+
+/**
+ * Opcode name (S-Instruction/@name, upper case) -> factory building the instruction from its XML fields,
+ * plus the reverse instruction class -> opcode. Populated once from the built-in instructions and any
+ * {@link OpcodeProvider}s on the class path.
+ */
+public final class OpcodeRegistry {
+
+    /** Builds an instruction from its XML fields; same contract as {@link Instruction#buildFromXml}. */
+    @FunctionalInterface
+    public interface Factory {
+        Instruction fromXml(String label, String variable, Map<String, String> args);
+    }
+
+    @FunctionalInterface
+    public interface Registrar {
+        void add(String opcode, Class<? extends Instruction> type, Factory factory);
+    }
+
+    private static final class Holder {
+        static final OpcodeRegistry INSTANCE = new OpcodeRegistry();
+    }
+
+    private final Map<String, Factory> factories = new HashMap<>();
+    private final Map<Class<?>, String> opcodes = new HashMap<>();
+
+    private OpcodeRegistry() {
+        Registrar registrar = (opcode, type, factory) -> {
+            String key = opcode.toUpperCase(Locale.ROOT);
+            if (factories.containsKey(key)) throw new IllegalStateException("Opcode registered twice: " + key);
+            factories.put(key, factory);
+            opcodes.putIfAbsent(type, key);
+        };
+        new BuiltinOpcodes().register(registrar);
+        for (OpcodeProvider provider : ServiceLoader.load(OpcodeProvider.class)) {
+            provider.register(registrar);
+        }
+    }
+
+    public static OpcodeRegistry get() {
+        return Holder.INSTANCE;
+    }
+
+    /** Builds the instruction for {@code opcode} (upper case). */
+    public Instruction create(String opcode, String label, String variable, Map<String, String> args) {
+        Factory f = factories.get(opcode);
+        if (f == null) {
+            throw new IllegalArgumentException("Unknown opcode " + opcode + " (known: " + new TreeSet<>(factories.keySet()) + ")");
+        }
+        return f.fromXml(label, variable, args);
+    }
+
+    public boolean contains(String opcode) {
+        return factories.containsKey(opcode);
+    }
+
+    /** Opcode of an instruction class, or null if it was never registered. */
+    public String opcodeOf(Class<? extends Instruction> type) {
+        return opcodes.get(type);
+    }
+
+    public Set<String> opcodes() {
+        return Collections.unmodifiableSet(factories.keySet());
+    }
+}
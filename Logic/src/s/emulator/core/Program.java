@@ -1,74 +1,282 @@
 package s.emulator.core;
 
 import s.emulator.core.expansion.ExpansionContext;
+import s.emulator.core.expansion.ExpansionTemplate;
 
+import java.lang.ref.SoftReference;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public final class Program {
+    /** Resolved jump target meaning "stop the program" (the EXIT label). */
+    public static final int EXIT_PC = -1;
+    /** Resolved jump target for instructions that never jump. */
+    public static final int NO_TARGET = -2;
+
     private final String name;
     private final List<Instruction> instructions;
-    private final Map<String, Integer> firstLabelIndex;
+    private final int[] firstLabelIndex; // per label id: PC of its first definition, or -1 (only jumped to)
+    private final int[] targets; // per PC: resolved jump target, EXIT_PC or NO_TARGET
+    private final SymbolTable symbols;
+    private final int[] operandStart; // per PC (+1 sentinel): offset into operandSlots
+    private final int[] operandSlots; // register slot of every operand, flattened
+    private final List<SoftReference<Expansion>> expansions = new ArrayList<>(); // [d-1] = degree d
+    private volatile int maxDegree = -1; // lazily computed
+
+    // Rounds over more than one chunk of instructions are expanded in parallel, one context per chunk.
+    private static final int EXPANSION_CHUNK = 8192;
+
+    /** System property: expansion chunk size to use even on one core (to reproduce the parallel path). */
+    public static final String EXPANSION_CHUNK_PROPERTY = "s.emulator.expansionChunk";
 
 
     public Program(String name, List<Instruction> instructions) {
+        this(name, instructions, null);
+    }
+
+    /**
+     * With {@code targets} already resolved (as stored by {@link BinaryProgramWriter}): each is only checked
+     * against its instruction's target label instead of being resolved again. Null links them as usual.
+     */
+    Program(String name, List<Instruction> instructions, int[] targets) {
         this.name = name;
         this.instructions = List.copyOf(instructions);
-        this.firstLabelIndex = buildFirstLabelIndex(this.instructions);
+        this.symbols = new SymbolTable();
+        this.firstLabelIndex = buildFirstLabelIndex(this.instructions, this.symbols);
+        this.targets = targets == null ? linkTargets(this.instructions, this.symbols, this.firstLabelIndex)
+                : checkTargets(this.instructions, this.symbols, this.firstLabelIndex, targets.clone());
+        this.operandStart = new int[this.instructions.size() + 1];
+        this.operandSlots = linkOperands(this.instructions, this.symbols, this.operandStart);
     }
 
     public String getName() { return name; }
     public List<Instruction> getInstructions() { return instructions; }
 
     public OptionalInt lookupLabel(String label) {
-        Integer idx = firstLabelIndex.get(label);
-        return idx == null ? OptionalInt.empty() : OptionalInt.of(idx);
+        int id = symbols.labelIdOf(label);
+        if (id < 0 || firstLabelIndex[id] < 0) return OptionalInt.empty();
+        return OptionalInt.of(firstLabelIndex[id]);
+    }
+
+    /** Resolved jump target of the instruction at {@code pc}: a PC, {@link #EXIT_PC} or {@link #NO_TARGET}. */
+    public int targetOf(int pc) {
+        return targets[pc];
+    }
+
+    public SymbolTable symbols() { return symbols; }
+
+    /** Register slot of operand {@code i} (see {@link Instruction#getVariables()}) of the instruction at {@code pc}. */
+    public int operandSlot(int pc, int i) {
+        return operandSlots[operandStart[pc] + i];
+    }
+
+    /** Link step: intern every variable into the symbol table and record per-PC operand slots. */
+    private static int[] linkOperands(List<Instruction> insns, SymbolTable symbols, int[] start) {
+        int[] slots = new int[insns.size() * 2];
+        int n = 0;
+        for (int i = 0; i < insns.size(); i++) {
+            start[i] = n;
+            for (String v : insns.get(i).getVariables()) {
+                if (n == slots.length) slots = Arrays.copyOf(slots, n * 2 + 2);
+                slots[n++] = symbols.intern(v);
+            }
+        }
+        start[insns.size()] = n;
+        return Arrays.copyOf(slots, n);
+    }
+
+    /** Link step: resolve every jump target to a PC once, failing fast on unknown labels. */
+    private static int[] linkTargets(List<Instruction> insns, SymbolTable symbols, int[] labels) {
+        int[] out = new int[insns.size()];
+        for (int i = 0; i < insns.size(); i++) {
+            Instruction ins = insns.get(i);
+            String tgt = ins.getTargetLabel();
+            if (tgt == null || tgt.isBlank()) {
+                out[i] = NO_TARGET;
+            } else if ("EXIT".equalsIgnoreCase(tgt)) {
+                out[i] = EXIT_PC;
+            } else {
+                int id = symbols.internLabel(tgt);
+                int idx = id < labels.length ? labels[id] : -1;
+                if (idx < 0) {
+                    throw new IllegalArgumentException("Unknown label referenced by instruction #" + (i + 1)
+                            + " (" + ins.getClass().getSimpleName() + "): " + tgt);
+                }
+                out[i] = idx;
+            }
+        }
+        return out;
+    }
+
+    /** Checks pre-resolved targets: NO_TARGET, EXIT_PC or the first definition of the instruction's target label. */
+    private static int[] checkTargets(List<Instruction> insns, SymbolTable symbols, int[] labels, int[] targets) {
+        if (targets.length != insns.size()) {
+            throw new IllegalArgumentException(targets.length + " jump targets for " + insns.size() + " instructions");
+        }
+        for (int i = 0; i < targets.length; i++) {
+            String tgt = insns.get(i).getTargetLabel();
+            int t = targets[i];
+            boolean ok;
+            if (tgt == null || tgt.isBlank()) {
+                ok = t == NO_TARGET;
+            } else if ("EXIT".equalsIgnoreCase(tgt)) {
+                ok = t == EXIT_PC;
+            } else {
+                int id = symbols.labelIdOf(tgt);
+                ok = t >= 0 && id >= 0 && id < labels.length && labels[id] == t;
+            }
+            if (!ok) throw new IllegalArgumentException("Jump target of instruction #" + (i + 1) + " does not match " + tgt);
+        }
+        return targets;
     }
 
-    private static Map<String, Integer> buildFirstLabelIndex(List<Instruction> insns) {
-        Map<String, Integer> map = new LinkedHashMap<>();
+    private static int[] buildFirstLabelIndex(List<Instruction> insns, SymbolTable symbols) {
+        int[] first = new int[insns.size()];
+        Arrays.fill(first, -1);
         for (int i = 0; i < insns.size(); i++) {
             String lbl = insns.get(i).getLabel();
-            if (lbl != null && !lbl.isBlank() && !map.containsKey(lbl)) {
-                map.put(lbl, i); // FIRST wins
+            if (lbl != null && !lbl.isBlank()) {
+                int id = symbols.internLabel(lbl); // ids of defined labels are < insns.size()
+                if (first[id] < 0) first[id] = i;  // FIRST wins
             }
         }
-        return map;
+        return first;
     }
 
+    /**
+     * This program expanded {@code degree} rounds. Degrees are derived incrementally (d+1 from the cached d,
+     * continuing the same fresh-name counters, so names match a from-scratch expansion) and cached behind
+     * soft references, so large expansions can be reclaimed and are simply rebuilt on demand.
+     */
     public Program expandToDegree(int degree) {
         if (degree <= 0) return this;
-        ExpansionContext ctx = ExpansionContext.fromProgram(this);
-        List<Instruction> cur = this.instructions;
-        for (int d = 0; d < degree; d++) {
-            boolean changed = false;
-            List<Instruction> next = new ArrayList<>(cur.size());
-            for (Instruction ins : cur) {
-                if (ins.isBasic()) {
-                    next.add(ins);
-                } else {
-                    List<Instruction> ex = ins.expand(ctx);
-                    if (!ex.isEmpty()) {
-                        if (ex.get(0).getLabel() == null && ins.getLabel() != null) {
-                        }
-                    }
-                    next.addAll(ex);
-                    changed = true;
-                }
+        return expansion(degree).program;
+    }
+
+    /**
+     * Provenance of {@code expandToDegree(degree)}: origin and parent of every expanded PC.
+     * Recorded while expanding and cached with the degree, so this never re-expands a cached degree.
+     */
+    public Provenance provenance(int degree) {
+        if (degree <= 0) return Provenance.identity(instructions.size());
+        return expansion(degree).provenance;
+    }
+
+    private Expansion expansion(int degree) {
+        synchronized (expansions) {
+            // Resume from the deepest degree <= requested that is still cached.
+            int d = Math.min(degree, expansions.size());
+            Expansion cur = null;
+            while (d > 0 && (cur = expansions.get(d - 1).get()) == null) d--;
+            if (cur == null) cur = new Expansion(this, ExpansionContext.fromProgram(this), Provenance.identity(instructions.size()));
+            while (d < degree && !cur.fullyBasic) {
+                cur = cur.next(name, instructions.size());
+                d++;
+                while (expansions.size() < d) expansions.add(new SoftReference<>(null));
+                expansions.set(d - 1, new SoftReference<>(cur));
             }
-            cur = next;
-            if (!changed) break; // fully basic
+            return cur;
         }
-        return new Program(this.name, cur);
     }
 
+    /** Max {@link Instruction#degree()} over the instructions: O(n), no trial expansion. */
     public int maxExpansionDegree() {
-        int deg = 0;
-        Program p = this;
-        while (p.instructions.stream().anyMatch(i -> !i.isBasic())) {
-            p = p.expandToDegree(1);
-            deg++;
-            if (deg > 10_000) break; // safety
+        int deg = maxDegree;
+        if (deg < 0) {
+            deg = 0;
+            for (Instruction ins : instructions) deg = Math.max(deg, ins.degree());
+            maxDegree = deg;
         }
         return deg;
     }
+
+    private boolean isFullyBasic() {
+        for (Instruction ins : instructions) if (!ins.isBasic()) return false;
+        return true;
+    }
+
+    /** One cached degree: the expanded program, its provenance and the fresh-name counters right after producing it. */
+    private static final class Expansion {
+        final Program program;
+        final ExpansionContext after;
+        final Provenance provenance;
+        final boolean fullyBasic;
+
+        Expansion(Program program, ExpansionContext after, Provenance provenance) {
+            this.program = program;
+            this.after = after;
+            this.provenance = provenance;
+            this.fullyBasic = program.isFullyBasic();
+        }
+
+        Expansion next(String name, int originalSize) {
+            List<Instruction> cur = program.instructions;
+            Integer forced = Integer.getInteger(EXPANSION_CHUNK_PROPERTY);
+            int size = forced != null ? Math.max(1, forced) : EXPANSION_CHUNK;
+            int chunks = forced != null || ForkJoinPool.getCommonPoolParallelism() > 1 ? (cur.size() + size - 1) / size : 1;
+            int[] bounds = new int[Math.max(1, chunks) + 1];
+            for (int c = 1; c < bounds.length; c++) bounds[c] = Math.min(cur.size(), c * size);
+            bounds[bounds.length - 1] = cur.size();
+            chunks = bounds.length - 1;
+
+            // Fresh names each chunk will take, prefix-summed so every chunk's context starts exactly where the
+            // sequential pass would be when reaching it.
+            int[] zStart = new int[chunks + 1], lStart = new int[chunks + 1];
+            zStart[0] = after.maxZ();
+            lStart[0] = after.maxLabel();
+            if (chunks > 1) {
+                IntStream.range(0, chunks).parallel().forEach(c -> {
+                    for (int k = bounds[c]; k < bounds[c + 1]; k++) {
+                        Instruction ins = cur.get(k);
+                        if (ins.isBasic()) continue;
+                        zStart[c + 1] += ExpansionTemplate.freshZ(ins);
+                        lStart[c + 1] += ExpansionTemplate.freshLabels(ins);
+                    }
+                });
+                for (int c = 0; c < chunks; c++) {
+                    zStart[c + 1] += zStart[c];
+                    lStart[c + 1] += lStart[c];
+                }
+            }
+
+            List<List<Instruction>> parts = new ArrayList<>(Collections.nCopies(chunks, null));
+            int[][] parents = new int[chunks][];
+            ExpansionContext[] ctx = new ExpansionContext[chunks];
+            IntStream range = IntStream.range(0, chunks);
+            (chunks > 1 ? range.parallel() : range).forEach(c -> {
+                ctx[c] = new ExpansionContext(after.maxX(), zStart[c], lStart[c]);
+                List<Instruction> out = new ArrayList<>(bounds[c + 1] - bounds[c]);
+                int[] parent = new int[(bounds[c + 1] - bounds[c]) * 2];
+                for (int k = bounds[c]; k < bounds[c + 1]; k++) {
+                    Instruction ins = cur.get(k);
+                    int from = out.size();
+                    if (ins.isBasic()) out.add(ins);
+                    else out.addAll(ExpansionTemplate.expand(ins, ctx[c]));
+                    if (out.size() > parent.length) parent = Arrays.copyOf(parent, Math.max(out.size(), parent.length * 2));
+                    Arrays.fill(parent, from, out.size(), k);
+                }
+                parts.set(c, out);
+                parents[c] = parent;
+            });
+            for (int c = 0; c < chunks - 1; c++) {
+                if (ctx[c].maxZ() != zStart[c + 1] || ctx[c].maxLabel() != lStart[c + 1]) {
+                    throw new IllegalStateException("Fresh-name count mismatch while expanding " + name);
+                }
+            }
+
+            int total = 0;
+            for (List<Instruction> part : parts) total += part.size();
+            List<Instruction> next = new ArrayList<>(total);
+            int[] parent = new int[total];
+            for (int c = 0; c < chunks; c++) {
+                System.arraycopy(parents[c], 0, parent, next.size(), parts.get(c).size());
+                next.addAll(parts.get(c));
+            }
+            int[] origin = new int[total];
+            for (int pc = 0; pc < total; pc++) origin[pc] = provenance.originOf(parent[pc]);
+            Provenance p = new Provenance(provenance.degree() + 1, parent, origin, originalSize);
+            return new Expansion(new Program(name, next), ctx[chunks - 1], p);
+        }
+    }
 }
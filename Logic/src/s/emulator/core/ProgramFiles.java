@@ -0,0 +1,18 @@
+package s.emulator.core;
+
+import java.io.File;
+import java.util.Locale;
+
+/** Loads a program file by extension: S-Program XML or the binary format. */
+public final class ProgramFiles {
+
+    private ProgramFiles() {}
+
+    public static Program load(File file) throws Exception {
+        if (file == null) throw new IllegalArgumentException("File is null.");
+        String n = file.getName().toLowerCase(Locale.ROOT);
+        if (n.endsWith(BinaryProgramLoader.EXTENSION)) return new BinaryProgramLoader().load(file);
+        if (n.endsWith(".xml")) return new StaxProgramLoader().load(file);
+        throw new IllegalArgumentException("Expected a .xml or " + BinaryProgramLoader.EXTENSION + " file, got: " + file.getName());
+    }
+}
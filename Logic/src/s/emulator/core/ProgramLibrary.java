@@ -0,0 +1,102 @@
+package s.emulator.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Programs indexed by name, for {@link ExecutionManager#setFunctionResolver}.
+ *
+ * {@link #loadDirectory} parses every .xml / .sbin file of a directory in parallel on a bounded pool (the
+ * loaders share one thread-safe parser factory), then indexes the results in file-name order, so the outcome
+ * doesn't depend on which file finished first. Lookups are lock-free reads of a concurrent map.
+ */
+public final class ProgramLibrary implements Function<String, Program> {
+
+    private final Map<String, Program> programs = new ConcurrentHashMap<>();
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public void setPool(ForkJoinPool pool) { this.pool = Objects.requireNonNull(pool); }
+
+    /**
+     * Loads every program file directly inside {@code dir}, replacing programs of the same name that are
+     * already in the library. Returns the files that could not be loaded (with the reason), in name order;
+     * the rest are loaded regardless. Within one directory the first file defining a name wins.
+     */
+    public Map<Path, String> loadDirectory(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) throw new IllegalArgumentException("Not a directory: " + dir.toAbsolutePath());
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(ProgramLibrary::isProgramFile).sorted().toList();
+        }
+
+        List<Future<Program>> loads = new ArrayList<>(files.size());
+        for (Path f : files) loads.add(pool.submit(() -> ProgramFiles.load(f.toFile())));
+
+        Map<Path, String> failures = new LinkedHashMap<>();
+        Map<String, Path> seen = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            Path f = files.get(i);
+            Program p;
+            try {
+                p = loads.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                loads.forEach(l -> l.cancel(true));
+                throw new IllegalStateException("Interrupted while loading " + dir, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                // ForkJoinTask rethrows a copy of the task's exception wrapping the original
+                while (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) cause = cause.getCause();
+                failures.put(f, cause.getMessage() == null ? cause.toString() : cause.getMessage());
+                continue;
+            }
+            Path first = seen.putIfAbsent(p.getName(), f);
+            if (first != null) {
+                failures.put(f, "Duplicate program name '" + p.getName() + "' (already defined by " + first.getFileName() + ")");
+                continue;
+            }
+            programs.put(p.getName(), p);
+        }
+        return failures;
+    }
+
+    /** Adds (or replaces) a single program under its own name. */
+    public void add(Program program) {
+        programs.put(program.getName(), program);
+    }
+
+    /** Program called {@code name}, or null; this is the function resolver view of the library. */
+    @Override
+    public Program apply(String name) {
+        return name == null ? null : programs.get(name);
+    }
+
+    public boolean contains(String name) {
+        return name != null && programs.containsKey(name);
+    }
+
+    /** Program names, sorted. */
+    public List<String> names() {
+        List<String> out = new ArrayList<>(programs.keySet());
+        Collections.sort(out);
+        return out;
+    }
+
+    public int size() {
+        return programs.size();
+    }
+
+    public void clear() {
+        programs.clear();
+    }
+
+    private static boolean isProgramFile(Path p) {
+        String n = p.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(p) && (n.endsWith(".xml") || n.endsWith(BinaryProgramLoader.EXTENSION));
+    }
+}
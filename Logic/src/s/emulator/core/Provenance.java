@@ -0,0 +1,50 @@
+package s.emulator.core;
+
+/**
+ * Where every instruction of an expanded program came from, as flat int arrays.
+ * Expansion keeps each instruction's children contiguous, so the descendants of an original instruction
+ * are one PC range of the expanded program.
+ */
+public final class Provenance {
+
+    private final int degree;
+    private final int[] parent; // per PC: index in the degree-1 program (null at degree 0: identity)
+    private final int[] origin; // per PC: index in the original program
+    private final int[] start;  // per original instruction (+1 sentinel): first descendant PC
+
+    Provenance(int degree, int[] parent, int[] origin, int originalSize) {
+        this.degree = degree;
+        this.parent = parent;
+        this.origin = origin;
+        this.start = new int[originalSize + 1];
+        // origin is non-decreasing: start[i] = first pc whose origin >= i
+        int pc = 0;
+        for (int i = 0; i <= originalSize; i++) {
+            while (pc < origin.length && origin[pc] < i) pc++;
+            start[i] = pc;
+        }
+    }
+
+    static Provenance identity(int size) {
+        int[] origin = new int[size];
+        for (int i = 0; i < size; i++) origin[i] = i;
+        return new Provenance(0, null, origin, size);
+    }
+
+    /** Expansion rounds actually applied (stops early once the program is fully basic). */
+    public int degree() { return degree; }
+
+    /** Number of instructions in the expanded program. */
+    public int size() { return origin.length; }
+
+    /** Index in the original program of the instruction that produced {@code pc}. */
+    public int originOf(int pc) { return origin[pc]; }
+
+    /** Index of {@code pc}'s parent in the program one degree lower ({@code pc} itself at degree 0). */
+    public int parentOf(int pc) { return parent == null ? pc : parent[pc]; }
+
+    /** First PC produced by original instruction {@code i}; its descendants are the next {@link #descendantCount} PCs. */
+    public int firstDescendant(int i) { return start[i]; }
+
+    public int descendantCount(int i) { return start[i + 1] - start[i]; }
+}
@@ -0,0 +1,149 @@
+package s.emulator.core;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Streaming loader for the same S-Program XML as {@link XmlProgramLoader}: reads one {@code <S-Instruction>}
+ * at a time and builds its Instruction directly, without a JAXB object tree. Errors carry the line and
+ * column of the offending element.
+ */
+public class StaxProgramLoader {
+
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory f = XMLInputFactory.newFactory();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return f;
+    }
+
+    public Program load(File xmlFile) throws Exception {
+        XmlProgramLoader.requireXml(xmlFile);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(xmlFile))) {
+            return load(in, xmlFile.getName());
+        }
+    }
+
+    /** {@code source} only names the input in error messages. */
+    public Program load(InputStream in, String source) throws Exception {
+        XMLStreamReader r;
+        synchronized (FACTORY) {
+            r = FACTORY.createXMLStreamReader(in);
+        }
+        try {
+            return readProgram(r);
+        } catch (XMLStreamException e) {
+            String msg = e.getMessage() == null ? "" : e.getMessage();
+            int m = msg.indexOf("Message: "); // the JDK parser prefixes its own "ParseError at [row,col]" line
+            throw new IllegalArgumentException(source + ": malformed XML" + at(e.getLocation()) + ": "
+                    + (m >= 0 ? msg.substring(m + "Message: ".length()) : msg), e);
+        } finally {
+            r.close();
+        }
+    }
+
+    private Program readProgram(XMLStreamReader r) throws XMLStreamException {
+        r.nextTag();
+        if (!"S-Program".equals(r.getLocalName())) {
+            throw new IllegalArgumentException("Root element is not <S-Program>" + at(r.getLocation()) + ".");
+        }
+        final String programName = XmlProgramLoader.safeTrim(r.getAttributeValue(null, "name"), "Unnamed");
+
+        List<Instruction> code = null;
+        List<Location> starts = new ArrayList<>();
+        while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if ("S-Instructions".equals(r.getLocalName()) && code == null) {
+                code = new ArrayList<>();
+                while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    if ("S-Instruction".equals(r.getLocalName())) {
+                        starts.add(r.getLocation());
+                        code.add(readInstruction(r, code.size() + 1, starts.get(starts.size() - 1)));
+                    } else {
+                        skip(r);
+                    }
+                }
+            } else {
+                skip(r); // unknown elements are ignored, as with JAXB
+            }
+        }
+        if (code == null) {
+            throw new IllegalArgumentException("Missing <S-Instructions> or it is empty.");
+        }
+        checkLabels(code, starts);
+        return new Program(programName, code); // links jump targets
+    }
+
+    /** Fails on a jump to a label no instruction defines, at the jumping instruction (Program only knows its index). */
+    private static void checkLabels(List<Instruction> code, List<Location> starts) {
+        Set<String> defined = new HashSet<>();
+        for (Instruction ins : code) {
+            if (ins.getLabel() != null) defined.add(ins.getLabel());
+        }
+        for (int i = 0; i < code.size(); i++) {
+            String target = code.get(i).getTargetLabel();
+            if (target != null && !target.isBlank() && !"EXIT".equalsIgnoreCase(target) && !defined.contains(target)) {
+                throw new IllegalArgumentException("S-Instruction #" + (i + 1) + at(starts.get(i))
+                        + ": unknown label " + target);
+            }
+        }
+    }
+
+    /** Reads one {@code <S-Instruction>} (the reader is on its start tag) and leaves the reader on its end tag. */
+    private Instruction readInstruction(XMLStreamReader r, int number, Location start) throws XMLStreamException {
+        String name = r.getAttributeValue(null, "name");
+        String variable = null, label = null;
+        Map<String, String> args = new HashMap<>();
+
+        while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (r.getLocalName()) {
+                case "S-Variable" -> variable = r.getElementText();
+                case "S-Label" -> label = r.getElementText();
+                case "S-Instruction-Arguments" -> {
+                    while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        if ("S-Instruction-Argument".equals(r.getLocalName())) {
+                            String argName = r.getAttributeValue(null, "name");
+                            String value = r.getAttributeValue(null, "value");
+                            if (argName != null) args.put(argName, value == null ? "" : value.trim());
+                        }
+                        skip(r);
+                    }
+                }
+                default -> skip(r);
+            }
+        }
+
+        try {
+            final String opcode = XmlProgramLoader.upper(XmlProgramLoader.reqAttr(name, "S-Instruction/@name"));
+            return OpcodeRegistry.get().create(opcode, XmlProgramLoader.safeTrim(label, null),
+                    XmlProgramLoader.safeTrim(variable, null), args);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("S-Instruction #" + number + at(start) + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Skips the current element (reader on its start tag) up to and including its end tag. */
+    private static void skip(XMLStreamReader r) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int ev = r.next();
+            if (ev == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (ev == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    private static String at(Location loc) {
+        if (loc == null || loc.getLineNumber() < 0) return "";
+        return " at line " + loc.getLineNumber() + ", column " + loc.getColumnNumber();
+    }
+}
@@ -0,0 +1,92 @@
+package s.emulator.core;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe memo of {@link ExecutionManager#runSubprogram} results.
+ * S programs are pure functions of their x inputs, so (program identity, argument vector) fully
+ * determines y and the cycles spent. Least recently used entries are evicted beyond {@code maxEntries}.
+ */
+public final class SubprogramCache {
+
+    private final int maxEntries;
+    private final Map<Key, ExecutionManager.RunOutcome> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SubprogramCache(int maxEntries) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be >= 1");
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ExecutionManager.RunOutcome> eldest) {
+                if (size() <= SubprogramCache.this.maxEntries) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /** Cached outcome of running {@code program} on {@code args}, or null (counted as a miss). */
+    public ExecutionManager.RunOutcome get(Program program, List<Integer> args) {
+        ExecutionManager.RunOutcome out;
+        synchronized (entries) {
+            out = entries.get(new Key(program, args));
+        }
+        if (out == null) misses.increment(); else hits.increment();
+        return out;
+    }
+
+    public void put(Program program, List<Integer> args, ExecutionManager.RunOutcome outcome) {
+        synchronized (entries) {
+            entries.put(new Key(program, args), outcome);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+
+    @Override
+    public String toString() {
+        return size() + " entries, " + getHits() + " hits, " + getMisses() + " misses, " + getEvictions() + " evictions";
+    }
+
+    /** Program by identity + argument values; trailing zeros are dropped since absent inputs are 0. */
+    private static final class Key {
+        private final Program program;
+        private final int[] args;
+        private final int hash;
+
+        Key(Program program, List<Integer> args) {
+            int n = args.size();
+            while (n > 0 && args.get(n - 1) <= 0) n--;
+            this.program = program;
+            this.args = new int[n];
+            for (int i = 0; i < n; i++) this.args[i] = Math.max(0, args.get(i));
+            this.hash = 31 * System.identityHashCode(program) + Arrays.hashCode(this.args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && k.program == program && Arrays.equals(k.args, args);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+    }
+}
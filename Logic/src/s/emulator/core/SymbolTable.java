@@ -0,0 +1,166 @@
+package s.emulator.core;
+
+import java.util.*;
+
+/**
+ * Variable and label names of one Program, interned once when it is built.
+ * Variables get dense register slots, labels dense ids; both carry their kind and numeric suffix
+ * (x3 -> X/3, L12 -> 12), so later passes compare ints instead of re-parsing strings.
+ */
+public final class SymbolTable {
+
+    /** Variable kinds, in display order. */
+    public enum Kind { Y, X, Z, OTHER }
+
+    /** y is always present and always lives in slot 0. */
+    public static final int Y_SLOT = 0;
+
+    /** Display order of variables: y, x's by index, z's by index, then the rest by name. */
+    public static final Comparator<String> DISPLAY_ORDER = Comparator
+            .comparing((String name) -> kindOf(name))
+            .thenComparingInt((String name) -> sortIndex(kindOf(name), numericSuffix(name)))
+            .thenComparing(Comparator.naturalOrder());
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Kind> kinds = new ArrayList<>();
+    private int[] index = new int[8];
+
+    private final Map<String, Integer> labelIds = new HashMap<>();
+    private final List<String> labels = new ArrayList<>();
+    private int[] labelIndex = new int[8];
+
+    private volatile int[] displayOrder; // lazily sorted slots
+
+    SymbolTable() {
+        intern("y");
+    }
+
+    int intern(String name) {
+        Integer slot = slots.get(name);
+        if (slot != null) return slot;
+        int s = names.size();
+        slots.put(name, s);
+        names.add(name);
+        kinds.add(kindOf(name));
+        if (s == index.length) index = Arrays.copyOf(index, s * 2);
+        index[s] = numericSuffix(name);
+        return s;
+    }
+
+    int internLabel(String label) {
+        Integer id = labelIds.get(label);
+        if (id != null) return id;
+        int l = labels.size();
+        labelIds.put(label, l);
+        labels.add(label);
+        if (l == labelIndex.length) labelIndex = Arrays.copyOf(labelIndex, l * 2);
+        labelIndex[l] = label.startsWith("L") ? numericSuffix(label) : -1;
+        return l;
+    }
+
+    /** Slot of {@code name}, or -1 if the program never mentions it. */
+    public int slotOf(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    public String nameOf(int slot) {
+        return names.get(slot);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public List<String> names() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public Kind kindOf(int slot) {
+        return kinds.get(slot);
+    }
+
+    /** Numeric suffix of the variable in {@code slot} (x3 -> 3), or -1 if it has none. */
+    public int indexOf(int slot) {
+        return index[slot];
+    }
+
+    /** Largest numeric suffix among variables of {@code kind}, 0 if there are none. */
+    public int maxIndex(Kind kind) {
+        int max = 0;
+        for (int s = 0; s < names.size(); s++) {
+            if (kinds.get(s) == kind) max = Math.max(max, index[s]);
+        }
+        return max;
+    }
+
+    /** Slots in {@link #DISPLAY_ORDER}; computed once. */
+    public int[] displayOrder() {
+        int[] order = displayOrder;
+        if (order == null) {
+            Integer[] boxed = new Integer[names.size()];
+            for (int s = 0; s < boxed.length; s++) boxed[s] = s;
+            Arrays.sort(boxed, Comparator
+                    .comparing((Integer s) -> kinds.get(s))
+                    .thenComparingInt(s -> sortIndex(kinds.get(s), index[s]))
+                    .thenComparing(names::get));
+            order = new int[boxed.length];
+            for (int s = 0; s < boxed.length; s++) order[s] = boxed[s];
+            displayOrder = order;
+        }
+        return order.clone();
+    }
+
+    /** Id of {@code label} (defined or only jumped to), or -1 if the program never mentions it. */
+    public int labelIdOf(String label) {
+        Integer id = labelIds.get(label);
+        return id == null ? -1 : id;
+    }
+
+    public String labelName(int id) {
+        return labels.get(id);
+    }
+
+    public int labelCount() {
+        return labels.size();
+    }
+
+    /** N of a label named L<i>N</i>, or -1. */
+    public int labelIndexOf(int id) {
+        return labelIndex[id];
+    }
+
+    /** Largest N among labels named L<i>N</i>, 0 if there are none. */
+    public int maxLabelIndex() {
+        int max = 0;
+        for (int l = 0; l < labels.size(); l++) max = Math.max(max, labelIndex[l]);
+        return max;
+    }
+
+    /** Kind of a variable name: "y", x..., z..., or anything else. */
+    public static Kind kindOf(String name) {
+        if ("y".equals(name)) return Kind.Y;
+        if (name.startsWith("x")) return Kind.X;
+        if (name.startsWith("z")) return Kind.Z;
+        return Kind.OTHER;
+    }
+
+    /** Number after the first character (x12 -> 12), or -1 if the rest is not a non-negative int. */
+    public static int numericSuffix(String name) {
+        if (name.length() < 2) return -1;
+        int v = 0;
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9' || v > (Integer.MAX_VALUE - (c - '0')) / 10) return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    // x's and z's sort by index (no index last); everything else by name alone.
+    private static int sortIndex(Kind kind, int index) {
+        if (kind == Kind.OTHER) return 0;
+        return index < 0 ? Integer.MAX_VALUE : index;
+    }
+}
@@ -1,4 +1,8 @@
 package s.emulator.core;
+import s.emulator.core.engine.EngineKind;
+import s.emulator.core.opt.PeepholeOptimizer;
+import s.emulator.core.opt.Specializer;
+
 import java.io.File;
 import java.util.*;
 
@@ -6,36 +10,136 @@ public class TestClass {
 
     public static void main(String[] args) throws Exception {
         if (args.length < 1) {
-            System.err.println("Usage: java ... TestClass <xmlPath> [x1=4,x2=7,...]");
+            System.err.println("Usage: java ... TestClass <program.xml|program.sbin> [x1=4 x2=7 ...]"
+                    + " [--engine=interpreter|threaded|accelerated|bytecode|optimized|block|profiling] [--loader=stax|jaxb] [--compare-loaders]"
+                    + " [--save-binary=out.sbin] [--degree=N] [--cache[=dir]] [--peephole]"
+                    + " [--specialize=x2=5,...] [--memo=N]");
             System.exit(1);
         }
         File xml = new File(args[0]);
 
-        XmlProgramLoader loader = new XmlProgramLoader();
-        Program program = loader.load(xml);
+        boolean jaxb = Arrays.asList(args).contains("--loader=jaxb");
+        if (Arrays.asList(args).contains("--compare-loaders")) {
+            System.exit(compareLoaders(xml) ? 0 : 2);
+        }
+        int degree = 0;
+        ExpansionCache cache = null;
+        for (String a : args) {
+            if (a.startsWith("--degree=")) degree = Integer.parseInt(a.substring("--degree=".length()).trim());
+            if (a.equals("--cache")) cache = new ExpansionCache(ExpansionCache.defaultDirectory(), ExpansionCache.DEFAULT_MAX_BYTES);
+            if (a.startsWith("--cache=")) cache = new ExpansionCache(new File(a.substring("--cache=".length())).toPath(), ExpansionCache.DEFAULT_MAX_BYTES);
+        }
+        Program program;
+        if (cache != null && !jaxb) {
+            program = cache.load(xml, degree); // warm start: no parsing, no expansion
+        } else {
+            program = (jaxb ? new XmlProgramLoader().load(xml) : ProgramFiles.load(xml)).expandToDegree(degree);
+        }
+
+        // --peephole: run the optimized program, and the original on the same inputs as a differential check
+        ExecutionManager reference = null;
+        if (Arrays.asList(args).contains("--peephole")) {
+            reference = new ExecutionManager(program);
+            program = PeepholeOptimizer.optimize(program);
+        }
+
+        // --specialize=x2=5,...: fix those inputs and run the residual program on the rest
+        Specializer.Result specialized = null;
+        for (String a : args) {
+            if (!a.startsWith("--specialize=")) continue;
+            Map<String, Integer> fixed = new LinkedHashMap<>();
+            for (String entry : a.substring("--specialize=".length()).split(",")) {
+                String[] kv = entry.split("=", 2);
+                if (kv.length != 2) throw new IllegalArgumentException("Bad --specialize entry: " + entry);
+                fixed.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+            }
+            if (reference != null) fixed.forEach(reference::setVar);
+            specialized = Specializer.specialize(program, fixed);
+            program = specialized.residual();
+        }
 
         ExecutionManager em = new ExecutionManager(program);
+        EngineKind engine = EngineKind.INTERPRETER;
+
+        // --memo=N: memoize subprogram calls (see ExecutionManager.runSubprogram) in an N-entry LRU cache
+        SubprogramCache memo = null;
+        for (String a : args) {
+            if (a.startsWith("--memo=")) memo = new SubprogramCache(Integer.parseInt(a.substring("--memo=".length()).trim()));
+        }
+        em.setResultCache(memo);
 
         // Optional: parse k=v inputs after path (x*, z*, y allowed; absent => 0)
         if (args.length >= 2) {
             for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith("--engine=")) {
+                    engine = EngineKind.fromName(args[i].substring("--engine=".length()));
+                    continue;
+                }
+                if (args[i].startsWith("--loader=") || args[i].startsWith("--degree=") || args[i].startsWith("--cache")
+                        || args[i].equals("--peephole") || args[i].startsWith("--specialize=")
+                        || args[i].startsWith("--memo=")) continue;
+                if (args[i].startsWith("--save-binary=")) {
+                    File out = new File(args[i].substring("--save-binary=".length()));
+                    new BinaryProgramWriter().write(program, out);
+                    System.out.println("Saved binary program: " + out);
+                    continue;
+                }
                 String[] kv = args[i].split("=", 2);
                 if (kv.length == 2) {
                     String k = kv[0].trim();
                     int v = Integer.parseInt(kv[1].trim());
                     em.setVar(k, v);
+                    if (reference != null) reference.setVar(k, v);
                 }
             }
         }
 
-        long cycles = Interpreter.run(em);
+        long cycles = engine.create().run(em);
+        if (specialized != null) cycles = specialized.applyOffset(em);
 
         System.out.println("Program: " + program.getName());
+        System.out.println("Engine: " + engine);
         System.out.println("Cycles: " + cycles);
+        if (specialized != null) {
+            System.out.println("Specialized: " + program.getInstructions().size() + " instructions, "
+                    + specialized.prefixSteps() + " steps pre-executed, cycle offset " + specialized.cycleOffset());
+        }
+        if (memo != null) System.out.println("Subprogram cache: " + memo);
 
         // Print variables: y, xs asc, zs asc (already ordered by snapshotVars)
         for (Map.Entry<String,Integer> e : em.snapshotVars().entrySet()) {
             System.out.println(e.getKey() + " = " + e.getValue());
         }
+
+        if (reference != null) {
+            long refCycles = Interpreter.run(reference);
+            System.out.println("Peephole: " + reference.getProgram().getInstructions().size() + " -> "
+                    + program.getInstructions().size() + " instructions, reference cycles " + refCycles);
+            if (reference.getVar("y") != em.getVar("y")) {
+                System.out.println("MISMATCH: reference y = " + reference.getVar("y"));
+                System.exit(2);
+            }
+        }
+    }
+
+    /** Parity check: the streaming loader must produce the same instructions as the JAXB loader. */
+    private static boolean compareLoaders(File xml) throws Exception {
+        List<Instruction> expected = new XmlProgramLoader().load(xml).getInstructions();
+        List<Instruction> actual = new StaxProgramLoader().load(xml).getInstructions();
+        int mismatches = Math.abs(expected.size() - actual.size());
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            if (!describe(expected.get(i)).equals(describe(actual.get(i)))) {
+                if (mismatches++ < 10) {
+                    System.out.println("#" + (i + 1) + ": jaxb " + describe(expected.get(i)) + " / stax " + describe(actual.get(i)));
+                }
+            }
+        }
+        System.out.println("Instructions: " + expected.size() + " (jaxb), " + actual.size() + " (stax); mismatches: " + mismatches);
+        return mismatches == 0;
+    }
+
+    private static String describe(Instruction ins) {
+        return ins.getClass().getSimpleName() + "(" + ins.getLabel() + ", " + ins.getVariables() + ", "
+                + ins.getTargetLabel() + ", " + ins.getConstant() + ")";
     }
 }
@@ -0,0 +1,89 @@
+package s.emulator.core.check;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.engine.ThreadedEngine;
+import s.emulator.core.instructions.Decrease;
+import s.emulator.core.instructions.Increase;
+import s.emulator.core.instructions.JumpNotZero;
+import s.emulator.core.instructions.Neutral;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The threaded engine with loop acceleration on against the interpreter, on random basic programs
+ * with large inputs (so most iterations are skipped) and inputs next to Integer.MAX_VALUE (so INCREASE
+ * saturation bounds how far a loop may be accelerated): every variable and the cycles must match. Half of
+ * the programs jump backwards anywhere, giving loops with guards; runs the interpreter can't finish within
+ * its step bound are skipped. Plain counting loops over x1 that step x2 check the saturation bound directly.
+ *
+ * Usage: java ... s.emulator.core.check.AcceleratorCheck [seed]
+ */
+public class AcceleratorCheck {
+
+    private static final long MAX_STEPS = 3_000_000;
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("accelerator");
+        ThreadedEngine accelerated = new ThreadedEngine(true);
+        int skipped = 0;
+
+        for (int t = 0; t < 400; t++) {
+            Program p = t % 2 == 0 ? RandomPrograms.halting(rnd, 3 + rnd.nextInt(25))
+                    : RandomPrograms.unbounded(rnd, 3 + rnd.nextInt(25));
+            Program basic = RandomPrograms.basic(p);
+            for (int k = 0; k < 3; k++) {
+                int x1 = input(rnd), x2 = input(rnd);
+                ExecutionManager ref = Differential.manager(basic, x1, x2);
+                if (!Differential.runBounded(ref, MAX_STEPS)) {
+                    skipped++;
+                    continue;
+                }
+                ExecutionManager em = Differential.manager(basic, x1, x2);
+                d.sameRun("#" + t + " x=" + x1 + "," + x2, ref, ref.getTotalCycles(), em, accelerated.run(em));
+            }
+        }
+
+        for (int t = 0; t < 300; t++) {
+            Program loop = countingLoop(rnd);
+            int x1 = rnd.nextInt(50_000), x2 = input(rnd);
+            ExecutionManager ref = Differential.manager(loop, x1, x2);
+            Differential.runBounded(ref, MAX_STEPS); // at most 50k iterations: always halts
+            ExecutionManager em = Differential.manager(loop, x1, x2);
+            d.sameRun("loop #" + t + " x=" + x1 + "," + x2, ref, ref.getTotalCycles(), em, accelerated.run(em));
+        }
+
+        System.out.println("skipped " + skipped + " runs over " + MAX_STEPS + " interpreter steps");
+        System.exit(d.finish());
+    }
+
+    /** {@code L1: x1 <- x1 - 1; (1 to 4 steps on x2, y, z1); IF x1 != 0 GOTO L1}. */
+    private static Program countingLoop(Random rnd) {
+        String[] vars = {"x2", "x2", "y", "z1"};
+        List<Instruction> code = new ArrayList<>();
+        code.add(new Decrease("L1", "x1"));
+        for (int k = 1 + rnd.nextInt(4); k > 0; k--) {
+            String v = vars[rnd.nextInt(vars.length)];
+            code.add(switch (rnd.nextInt(4)) {
+                case 0 -> new Decrease(null, v);
+                case 1 -> new Neutral(null, v);
+                default -> new Increase(null, v);
+            });
+        }
+        code.add(new JumpNotZero(null, "x1", "L1"));
+        return new Program("loop", code);
+    }
+
+    /** Small, large, or a few short of Integer.MAX_VALUE. */
+    private static int input(Random rnd) {
+        return switch (rnd.nextInt(4)) {
+            case 0 -> rnd.nextInt(4);
+            case 1 -> Integer.MAX_VALUE - rnd.nextInt(4);
+            default -> rnd.nextInt(50_000);
+        };
+    }
+}
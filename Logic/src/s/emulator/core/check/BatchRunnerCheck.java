@@ -0,0 +1,90 @@
+package s.emulator.core.check;
+
+import s.emulator.core.BatchRunner;
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Interpreter;
+import s.emulator.core.Program;
+import s.emulator.core.engine.ExecutionEngine;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link BatchRunner} against one fresh interpreter run per vector: ordered results arrive in input order,
+ * unordered ones are the same results in some order, and reusing each worker's ExecutionManager (reset
+ * between vectors) changes nothing. A vector that throws must fail the batch and stop the rest of it.
+ *
+ * Usage: java ... s.emulator.core.check.BatchRunnerCheck [seed]
+ */
+public class BatchRunnerCheck {
+
+    public static void main(String[] args) throws Exception {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("batch");
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        for (int t = 0; t < 20; t++) {
+            Program p = RandomPrograms.halting(rnd, 5 + rnd.nextInt(30));
+            int degree = rnd.nextInt(p.maxExpansionDegree() + 1);
+            List<int[]> inputs = new ArrayList<>();
+            for (int i = 0; i < 500; i++) inputs.add(new int[]{rnd.nextInt(6), rnd.nextInt(6)});
+
+            Program expanded = p.expandToDegree(degree);
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < inputs.size(); i++) {
+                ExecutionManager em = Differential.manager(expanded, inputs.get(i)[0], inputs.get(i)[1]);
+                long cycles = Interpreter.run(em);
+                expected.add(i + " y=" + em.getVar("y") + " cycles=" + cycles + " " + em.snapshotVars());
+            }
+
+            for (boolean ordered : new boolean[]{true, false}) {
+                BatchRunner runner = new BatchRunner(p, degree);
+                runner.setPool(pool);
+                runner.setChunkSize(1 + rnd.nextInt(40));
+                runner.setCollectVars(true);
+                runner.setOrdered(ordered);
+                List<String> actual = new ArrayList<>();
+                runner.run(inputs.stream(), r -> actual.add(r.getIndex() + " y=" + r.getY() + " cycles=" + r.getCycles() + " " + r.getVars()));
+                if (!ordered) actual.sort(Comparator.comparingInt(s -> Integer.parseInt(s.substring(0, s.indexOf(' ')))));
+                d.same((ordered ? "ordered" : "unordered") + " batch #" + t, expected, actual);
+            }
+        }
+
+        // A failing vector: run() throws, and the chunks already in flight stop instead of running on.
+        LongAdder calls = new LongAdder();
+        ExecutionEngine failing = em -> {
+            calls.increment();
+            if (em.getVar("x1") == 13) throw new IllegalArgumentException("vector 13 failed");
+            return Interpreter.run(em);
+        };
+        Program slow = RandomPrograms.halting(rnd, 40);
+        for (boolean ordered : new boolean[]{true, false}) {
+            calls.reset();
+            BatchRunner runner = new BatchRunner(slow, 0);
+            runner.setPool(pool);
+            runner.setEngine(failing);
+            runner.setChunkSize(20_000); // window of 8 chunks: 160k vectors in flight
+            runner.setOrdered(ordered);
+            Stream<int[]> inputs = IntStream.range(0, 200_000).mapToObj(i -> new int[]{i % 100_000, 1});
+            long atFailure = -1;
+            try {
+                runner.run(inputs, r -> {});
+            } catch (IllegalStateException expected) {
+                atFailure = calls.sum();
+            }
+            d.check((ordered ? "ordered" : "unordered") + " failure is reported", atFailure >= 0, () -> "run() returned normally");
+            pool.awaitQuiescence(10, TimeUnit.SECONDS);
+            // at most the vector each worker was just starting may still run
+            long after = calls.sum() - atFailure;
+            d.check((ordered ? "ordered" : "unordered") + " in-flight chunks stopped", after <= pool.getParallelism(),
+                    () -> after + " vectors ran after the batch failed");
+        }
+
+        pool.shutdown();
+        System.exit(d.finish());
+    }
+}
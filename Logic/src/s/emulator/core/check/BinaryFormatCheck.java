@@ -0,0 +1,63 @@
+package s.emulator.core.check;
+
+import s.emulator.core.BinaryProgramLoader;
+import s.emulator.core.BinaryProgramWriter;
+import s.emulator.core.Program;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Writes random programs with {@link BinaryProgramWriter} and reads them back with
+ * {@link BinaryProgramLoader}: the round trip gives the same instructions, and every truncated or
+ * byte-damaged copy either loads or fails with IllegalArgumentException, never with another exception.
+ *
+ * Usage: java ... s.emulator.core.check.BinaryFormatCheck [seed]
+ */
+public class BinaryFormatCheck {
+
+    public static void main(String[] args) throws IOException {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("binary format");
+        BinaryProgramLoader loader = new BinaryProgramLoader();
+
+        for (int t = 0; t < 200; t++) {
+            Program p = RandomPrograms.halting(rnd, 3 + rnd.nextInt(40));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new BinaryProgramWriter().write(p, out);
+            byte[] bytes = out.toByteArray();
+            d.same("round trip #" + t, Differential.listing(p), Differential.listing(loader.read(ByteBuffer.wrap(bytes), "#" + t)));
+
+            for (int k = 0; k < 20; k++) {
+                int cut = rnd.nextInt(bytes.length);
+                Throwable thrown = failsCleanly(loader, ByteBuffer.wrap(bytes, 0, cut));
+                d.check("#" + t + " truncated to " + cut, thrown instanceof IllegalArgumentException,
+                        () -> thrown == null ? "loaded" : thrown.toString());
+            }
+            for (int k = 0; k < 50; k++) {
+                byte[] damaged = bytes.clone();
+                int at = rnd.nextInt(damaged.length);
+                damaged[at] = (byte) (rnd.nextBoolean() ? rnd.nextInt(256) : damaged[at] ^ 0x80);
+                Throwable thrown = failsCleanly(loader, ByteBuffer.wrap(damaged));
+                d.check("#" + t + " damaged at " + at, thrown == null || thrown instanceof IllegalArgumentException,
+                        () -> String.valueOf(thrown));
+            }
+        }
+
+        System.exit(d.finish());
+    }
+
+    /** What reading {@code buf} threw: null if it loaded, IllegalArgumentException if it was refused. */
+    private static Throwable failsCleanly(BinaryProgramLoader loader, ByteBuffer buf) {
+        try {
+            loader.read(buf, "damaged");
+            return null;
+        } catch (IllegalArgumentException refused) {
+            return refused;
+        } catch (RuntimeException | OutOfMemoryError e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package s.emulator.core.check;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Interpreter;
+import s.emulator.core.Program;
+import s.emulator.core.engine.BytecodeCompiler;
+import s.emulator.core.engine.BytecodeEngine;
+import s.emulator.core.engine.CompiledProgram;
+
+import java.util.Random;
+
+/**
+ * Compiles random basic programs with {@link BytecodeCompiler} (so the verifier checks the constant pool
+ * and stack map frames) and runs them against the interpreter; also checks that a fully expanded program far
+ * larger than one JIT-compilable method is compiled, split into regions, rather than falling back.
+ *
+ * Usage: java ... s.emulator.core.check.BytecodeCheck [seed]
+ */
+public class BytecodeCheck {
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("bytecode");
+        int compiled = 0;
+
+        for (int t = 0; t < 500; t++) {
+            Program p = RandomPrograms.basic(RandomPrograms.halting(rnd, 3 + rnd.nextInt(40)));
+            CompiledProgram cp;
+            try {
+                cp = BytecodeCompiler.compile(p);
+                compiled++;
+            } catch (IllegalArgumentException tooLarge) {
+                cp = null;
+            }
+            BytecodeEngine engine = new BytecodeEngine();
+            for (int k = 0; k < 4; k++) {
+                int x1 = rnd.nextInt(5), x2 = rnd.nextInt(5);
+                ExecutionManager ref = Differential.manager(p, x1, x2);
+                long refCycles = Interpreter.run(ref);
+                if (cp != null) {
+                    ExecutionManager em = Differential.manager(p, x1, x2);
+                    d.sameRun("compiled #" + t + " x=" + x1 + "," + x2, ref, refCycles, em, cp.run(em));
+                }
+                ExecutionManager em = Differential.manager(p, x1, x2);
+                d.sameRun("engine #" + t + " x=" + x1 + "," + x2, ref, refCycles, em, engine.run(em));
+            }
+        }
+
+        Program big = RandomPrograms.basic(RandomPrograms.halting(rnd, 3000));
+        String what = "large program (" + big.getInstructions().size() + " instructions)";
+        CompiledProgram cp = null;
+        try {
+            cp = BytecodeCompiler.compile(big);
+        } catch (IllegalArgumentException tooLarge) {
+            d.check(what + " compiled", false, tooLarge::getMessage);
+        }
+        if (cp != null) {
+            int regions = cp.getRegions();
+            d.check(what + " split", regions > 1, () -> regions + " region");
+            for (int k = 0; k < 4; k++) {
+                int x1 = rnd.nextInt(6), x2 = rnd.nextInt(6);
+                ExecutionManager ref = Differential.manager(big, x1, x2);
+                long refCycles = Interpreter.run(ref);
+                ExecutionManager em = Differential.manager(big, x1, x2);
+                d.sameRun(what + " x=" + x1 + "," + x2, ref, refCycles, em, cp.run(em));
+            }
+        }
+
+        System.out.println("compiled " + compiled + " of 500 random programs");
+        System.exit(d.finish());
+    }
+}
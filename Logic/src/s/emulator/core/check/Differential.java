@@ -0,0 +1,73 @@
+package s.emulator.core.check;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/** Tally of one differential check: compares runs against a reference and reports the first few mismatches. */
+final class Differential {
+
+    private static final int MAX_REPORTED = 10;
+
+    private final String name;
+    private int checks;
+    private int failures;
+
+    Differential(String name) {
+        this.name = name;
+    }
+
+    /** A manager for {@code p} with inputs x1, x2 set. */
+    static ExecutionManager manager(Program p, int x1, int x2) {
+        ExecutionManager em = new ExecutionManager(p);
+        em.setVar("x1", x1);
+        em.setVar("x2", x2);
+        return em;
+    }
+
+    /** Runs {@code em} for at most {@code maxSteps} instructions; whether it halted. */
+    static boolean runBounded(ExecutionManager em, long maxSteps) {
+        List<Instruction> code = em.getProgram().getInstructions();
+        for (long step = 0; em.isRunning() && em.getPC() >= 0 && em.getPC() < code.size(); step++) {
+            if (step == maxSteps) return false;
+            code.get(em.getPC()).execute(em);
+        }
+        return true;
+    }
+
+    /** One line per instruction: class, label, operands, constant and target. */
+    static List<String> listing(Program p) {
+        List<String> lines = new ArrayList<>();
+        for (Instruction ins : p.getInstructions()) {
+            lines.add(ins.getClass().getSimpleName() + " " + ins.getLabel() + " " + ins.getVariables() + " "
+                    + ins.getConstant() + " -> " + ins.getTargetLabel());
+        }
+        return lines;
+    }
+
+    /** Same cycles and same variables. */
+    void sameRun(String what, ExecutionManager expected, long expectedCycles, ExecutionManager actual, long actualCycles) {
+        check(what, expectedCycles == actualCycles && expected.snapshotVars().equals(actual.snapshotVars()),
+                () -> expectedCycles + " " + expected.snapshotVars() + " vs " + actualCycles + " " + actual.snapshotVars());
+    }
+
+    void check(String what, boolean ok, Supplier<String> detail) {
+        checks++;
+        if (!ok && failures++ < MAX_REPORTED) System.out.println("MISMATCH " + what + ": " + detail.get());
+    }
+
+    void same(String what, Object expected, Object actual) {
+        check(what, Objects.equals(expected, actual), () -> expected + " vs " + actual);
+    }
+
+    /** Prints the tally; the process exit status for it. */
+    int finish() {
+        System.out.println(name + ": " + checks + " checks, " + failures + " failures");
+        return failures == 0 ? 0 : 1;
+    }
+}
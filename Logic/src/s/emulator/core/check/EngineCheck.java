@@ -0,0 +1,69 @@
+package s.emulator.core.check;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Interpreter;
+import s.emulator.core.Program;
+import s.emulator.core.engine.EngineKind;
+import s.emulator.core.engine.ExecutionEngine;
+import s.emulator.core.engine.Profile;
+import s.emulator.core.engine.ProfilingEngine;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Every {@link EngineKind} against the interpreter on the same random programs, at random degrees (so both
+ * synthetic and fully basic code): every variable and the cycles must match. Each engine instance serves
+ * all runs, so per-program caches are exercised too. The profiler's counters must add up to the run: total
+ * cycles, instructions executed, and the same total summed per original instruction.
+ *
+ * Usage: java ... s.emulator.core.check.EngineCheck [seed]
+ */
+public class EngineCheck {
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("engines");
+        EngineKind[] kinds = EngineKind.values();
+        ExecutionEngine[] engines = new ExecutionEngine[kinds.length];
+        for (int i = 0; i < kinds.length; i++) engines[i] = kinds[i].create();
+
+        for (int t = 0; t < 500; t++) {
+            Program p = RandomPrograms.halting(rnd, 3 + rnd.nextInt(40));
+            int deg = rnd.nextInt(p.maxExpansionDegree() + 1);
+            Program e = p.expandToDegree(deg);
+            for (int k = 0; k < 3; k++) {
+                int x1 = rnd.nextInt(6), x2 = rnd.nextInt(6);
+                ExecutionManager ref = Differential.manager(e, x1, x2);
+                long refCycles = Interpreter.run(ref);
+                for (int i = 0; i < kinds.length; i++) {
+                    String what = kinds[i] + " #" + t + " x=" + x1 + "," + x2;
+                    ExecutionManager em = Differential.manager(e, x1, x2);
+                    d.sameRun(what, ref, refCycles, em, engines[i].run(em));
+                    if (engines[i] instanceof ProfilingEngine profiler) {
+                        Profile profile = profiler.lastProfile();
+                        d.same(what + " profiled cycles", refCycles, profile.totalCycles());
+                        d.same(what + " profiled steps", steps(e, x1, x2), profile.totalExecutions());
+                        d.same(what + " profiled by origin", refCycles,
+                                profile.byOrigin(p, p.provenance(deg)).totalCycles());
+                    }
+                }
+            }
+        }
+
+        System.exit(d.finish());
+    }
+
+    /** Instructions the interpreter executes running {@code p} on x1, x2. */
+    private static long steps(Program p, int x1, int x2) {
+        ExecutionManager em = Differential.manager(p, x1, x2);
+        List<Instruction> code = p.getInstructions();
+        long steps = 0;
+        while (em.isRunning() && em.getPC() >= 0 && em.getPC() < code.size()) {
+            code.get(em.getPC()).execute(em);
+            steps++;
+        }
+        return steps;
+    }
+}
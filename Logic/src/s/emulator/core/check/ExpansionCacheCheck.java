@@ -0,0 +1,73 @@
+package s.emulator.core.check;
+
+import s.emulator.core.BinaryProgramLoader;
+import s.emulator.core.BinaryProgramWriter;
+import s.emulator.core.ExpansionCache;
+import s.emulator.core.Program;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * {@link ExpansionCache} against expanding directly: cold loads, warm loads, and loads after an entry was
+ * damaged (one byte changed, or cut short) must all give exactly the expansion of the source.
+ *
+ * Usage: java ... s.emulator.core.check.ExpansionCacheCheck [seed]
+ */
+public class ExpansionCacheCheck {
+
+    public static void main(String[] args) throws Exception {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("expansion cache");
+        Path root = Files.createTempDirectory("expansion-cache-check");
+        try {
+            for (int t = 0; t < 40; t++) {
+                Program p = RandomPrograms.halting(rnd, 3 + rnd.nextInt(30));
+                File source = root.resolve("p" + t + BinaryProgramLoader.EXTENSION).toFile();
+                new BinaryProgramWriter().write(p, source);
+                int degree = rnd.nextInt(p.maxExpansionDegree() + 1);
+                List<String> expected = Differential.listing(p.expandToDegree(degree));
+
+                Path dir = root.resolve("cache" + t);
+                ExpansionCache cache = new ExpansionCache(dir, ExpansionCache.DEFAULT_MAX_BYTES);
+                d.same("#" + t + " cold", expected, Differential.listing(cache.load(source, degree)));
+                d.same("#" + t + " warm", expected, Differential.listing(cache.load(source, degree)));
+
+                for (int k = 0; k < 25; k++) {
+                    Path entry = entryOf(dir);
+                    byte[] bytes = Files.readAllBytes(entry);
+                    String what;
+                    if (k % 5 == 0) {
+                        int cut = rnd.nextInt(bytes.length);
+                        Files.write(entry, Arrays.copyOf(bytes, cut));
+                        what = "cut to " + cut;
+                    } else {
+                        int at = rnd.nextInt(bytes.length);
+                        bytes[at] = (byte) (bytes[at] ^ (1 + rnd.nextInt(255)));
+                        Files.write(entry, bytes);
+                        what = "damaged at " + at;
+                    }
+                    d.same("#" + t + " " + what, expected, Differential.listing(cache.load(source, degree)));
+                }
+            }
+        } finally {
+            try (Stream<Path> s = Files.walk(root)) {
+                s.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+            }
+        }
+        System.exit(d.finish());
+    }
+
+    private static Path entryOf(Path dir) throws Exception {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(f -> f.getFileName().toString().endsWith(BinaryProgramLoader.EXTENSION)).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No cache entry in " + dir));
+        }
+    }
+}
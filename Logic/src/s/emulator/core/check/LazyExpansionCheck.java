@@ -0,0 +1,81 @@
+package s.emulator.core.check;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Interpreter;
+import s.emulator.core.Program;
+import s.emulator.core.engine.LazyExpansionEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@link LazyExpansionEngine} against {@code expandToDegree(d)} run on the {@link Interpreter}, at every
+ * degree: same y, cycles and variables. One engine serves several inputs, so later runs go through the
+ * blocks memoized by earlier ones. A quarter of the programs contain an instruction with no threaded op,
+ * which the engine must run eagerly expanded.
+ *
+ * Usage: java ... s.emulator.core.check.LazyExpansionCheck [seed]
+ */
+public class LazyExpansionCheck {
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("lazy expansion");
+
+        for (int t = 0; t < 300; t++) {
+            Program p = RandomPrograms.halting(rnd, 3 + rnd.nextInt(40));
+            if (t % 4 == 3) p = withBump(p, rnd.nextInt(p.getInstructions().size()));
+            for (int deg = 0; deg <= p.maxExpansionDegree(); deg++) {
+                Program eager = p.expandToDegree(deg);
+                LazyExpansionEngine engine = new LazyExpansionEngine(deg);
+                for (int k = 0; k < 3; k++) {
+                    int x1 = rnd.nextInt(5), x2 = rnd.nextInt(5);
+                    ExecutionManager ref = Differential.manager(eager, x1, x2);
+                    long refCycles = Interpreter.run(ref);
+                    ExecutionManager em = Differential.manager(p, x1, x2);
+                    long cycles = engine.run(em);
+                    d.sameRun("#" + t + " degree " + deg + " x=" + x1 + "," + x2, ref, refCycles, em, cycles);
+                }
+            }
+        }
+
+        System.exit(d.finish());
+    }
+
+    /** {@code p} with an unlabeled {@link Bump} of y inserted after instruction {@code at}. */
+    private static Program withBump(Program p, int at) {
+        List<Instruction> code = new ArrayList<>(p.getInstructions());
+        code.add(at + 1, new Bump(null, "y"));
+        return new Program(p.getName(), code);
+    }
+
+    /** {@code V <- V + 2}: basic, but not one of the instructions the threaded ops know. */
+    private static final class Bump implements Instruction {
+        private final String label, variable;
+
+        Bump(String label, String variable) {
+            this.label = label;
+            this.variable = variable;
+        }
+
+        @Override public String getLabel() { return label; }
+        @Override public int getCycles() { return 3; }
+        @Override public List<String> getVariables() { return List.of(variable); }
+        @Override public List<String> getWrittenVariables() { return List.of(variable); }
+
+        @Override
+        public void execute(ExecutionManager em) {
+            em.setOperand(0, em.getOperand(0) + 2);
+            em.addCycles(getCycles());
+            em.incPC();
+        }
+
+        @Override
+        public Instruction buildFromXml(String label, String variable, Map<String, String> args) {
+            return new Bump(label, variable);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package s.emulator.core.check;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Program;
+import s.emulator.core.engine.OptimizedEngine;
+import s.emulator.core.opt.DeadCodeElimination;
+
+import java.util.Random;
+
+/**
+ * {@link OptimizedEngine} (threaded ops over {@link DeadCodeElimination}'s output) against the interpreter,
+ * on random programs at random degrees: every variable and the cycles must match exactly, and the pass never
+ * adds instructions. Half of the programs jump backwards anywhere (GOTO chains that loop or lead into each
+ * other, as in PeepholeCheck); only runs the interpreter finishes within its step bound are compared.
+ *
+ * Usage: java ... s.emulator.core.check.OptimizedEngineCheck [seed]
+ */
+public class OptimizedEngineCheck {
+
+    private static final long MAX_STEPS = 200_000;
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("optimized engine");
+        OptimizedEngine engine = new OptimizedEngine();
+
+        for (int t = 0; t < 2000; t++) {
+            Program p = t % 2 == 0 ? RandomPrograms.halting(rnd, 2 + rnd.nextInt(25))
+                    : RandomPrograms.unbounded(rnd, 2 + rnd.nextInt(25));
+            Program e = p.expandToDegree(rnd.nextInt(p.maxExpansionDegree() + 1));
+            int kept = DeadCodeElimination.run(e).size();
+            d.check("#" + t + " size", kept <= e.getInstructions().size(), () -> kept + " > " + e.getInstructions().size());
+            for (int k = 0; k < 3; k++) {
+                int x1 = rnd.nextInt(5), x2 = rnd.nextInt(5);
+                ExecutionManager ref = Differential.manager(e, x1, x2);
+                if (!Differential.runBounded(ref, MAX_STEPS)) continue;
+                ExecutionManager em = Differential.manager(e, x1, x2);
+                d.sameRun("#" + t + " x=" + x1 + "," + x2, ref, ref.getTotalCycles(), em, engine.run(em));
+            }
+        }
+
+        System.exit(d.finish());
+    }
+}
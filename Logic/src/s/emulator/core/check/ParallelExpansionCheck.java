@@ -0,0 +1,83 @@
+package s.emulator.core.check;
+
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.Provenance;
+import s.emulator.core.expansion.ExpansionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Chunked expansion against one plain sequential pass of {@link Instruction#expand}: every degree must
+ * give the same instructions, fresh names and provenance whatever the chunk size. Chunking is forced
+ * through {@link Program#EXPANSION_CHUNK_PROPERTY}, so this exercises the parallel path on any machine;
+ * run with {@code -Djava.util.concurrent.ForkJoinPool.common.parallelism=N} to spread it over threads.
+ *
+ * Usage: java ... s.emulator.core.check.ParallelExpansionCheck [seed]
+ */
+public class ParallelExpansionCheck {
+
+    private static final int[] CHUNK_SIZES = {1, 2, 7, 64};
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("parallel expansion");
+
+        for (int t = 0; t < 200; t++) {
+            Program p = RandomPrograms.halting(rnd, 5 + rnd.nextInt(200));
+            List<List<String>> expected = sequential(p);
+            for (int size : CHUNK_SIZES) {
+                System.setProperty(Program.EXPANSION_CHUNK_PROPERTY, Integer.toString(size));
+                Program fresh = new Program(p.getName(), p.getInstructions()); // nothing cached yet
+                for (int deg = 1; deg < expected.size(); deg++) {
+                    d.same("program #" + t + " chunk " + size + " degree " + deg, expected.get(deg), listing(fresh, deg));
+                }
+            }
+            System.clearProperty(Program.EXPANSION_CHUNK_PROPERTY);
+        }
+
+        System.exit(d.finish());
+    }
+
+    /** Listing of every degree up to the maximum, expanding one instruction after another with one context. */
+    private static List<List<String>> sequential(Program p) {
+        List<List<String>> out = new ArrayList<>();
+        ExpansionContext ctx = ExpansionContext.fromProgram(p);
+        List<Instruction> cur = p.getInstructions();
+        int[] origin = new int[cur.size()];
+        for (int pc = 0; pc < origin.length; pc++) origin[pc] = pc;
+        out.add(null); // degree 0 is the program itself
+        for (int deg = 1; deg <= p.maxExpansionDegree(); deg++) {
+            List<Instruction> next = new ArrayList<>();
+            List<String> lines = new ArrayList<>();
+            List<Integer> nextOrigin = new ArrayList<>();
+            for (int k = 0; k < cur.size(); k++) {
+                Instruction ins = cur.get(k);
+                for (Instruction c : ins.isBasic() ? List.of(ins) : ins.expand(ctx)) {
+                    lines.add(line(c, k, origin[k]));
+                    next.add(c);
+                    nextOrigin.add(origin[k]);
+                }
+            }
+            out.add(lines);
+            cur = next;
+            origin = nextOrigin.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return out;
+    }
+
+    private static List<String> listing(Program p, int degree) {
+        List<Instruction> code = p.expandToDegree(degree).getInstructions();
+        Provenance prov = p.provenance(degree);
+        List<String> lines = new ArrayList<>(code.size());
+        for (int pc = 0; pc < code.size(); pc++) lines.add(line(code.get(pc), prov.parentOf(pc), prov.originOf(pc)));
+        return lines;
+    }
+
+    private static String line(Instruction ins, int parent, int origin) {
+        return ins.getClass().getSimpleName() + " " + ins.getLabel() + " " + ins.getVariables() + " "
+                + ins.getConstant() + " -> " + ins.getTargetLabel() + " parent " + parent + " origin " + origin;
+    }
+}
@@ -0,0 +1,60 @@
+package s.emulator.core.check;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.instructions.ConstantAssignment;
+import s.emulator.core.instructions.GotoLabel;
+import s.emulator.core.instructions.JumpNotZero;
+import s.emulator.core.opt.PeepholeOptimizer;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random basic programs against their {@link PeepholeOptimizer} output: for every input on which the source
+ * halts, the optimized program halts too, with the same y and in no more cycles. Half of the programs jump
+ * backwards as well (GOTO chains that loop or lead into each other), so every run is step-bounded.
+ *
+ * Usage: java ... s.emulator.core.check.PeepholeCheck [seed]
+ */
+public class PeepholeCheck {
+
+    private static final long MAX_STEPS = 200_000;
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("peephole");
+
+        // GOTO L1 where L1 is itself a GOTO, right after a jump to EXIT: x1 = 3, x2 = 1 must halt with y = 0.
+        Program chain = new Program("goto chain", List.<Instruction>of(
+                new ConstantAssignment("L3", "x2", 2),
+                new JumpNotZero(null, "x2", "EXIT"),
+                new GotoLabel("L1", "EXIT"),
+                new GotoLabel("L4", "L1")));
+        compare(d, "goto chain", RandomPrograms.basic(chain), 3, 1);
+
+        for (int t = 0; t < 3000; t++) {
+            Program p = t % 2 == 0 ? RandomPrograms.halting(rnd, 2 + rnd.nextInt(25))
+                    : RandomPrograms.unbounded(rnd, 2 + rnd.nextInt(25));
+            Program basic = RandomPrograms.basic(p);
+            for (int k = 0; k < 3; k++) compare(d, "#" + t, basic, rnd.nextInt(5), rnd.nextInt(5));
+        }
+
+        System.exit(d.finish());
+    }
+
+    private static void compare(Differential d, String what, Program basic, int x1, int x2) {
+        ExecutionManager ref = Differential.manager(basic, x1, x2);
+        if (!Differential.runBounded(ref, MAX_STEPS)) return; // only halting runs have a y to keep
+        Program opt = PeepholeOptimizer.optimize(basic);
+        ExecutionManager run = Differential.manager(opt, x1, x2);
+        String in = what + " x1=" + x1 + " x2=" + x2;
+        boolean halted = Differential.runBounded(run, MAX_STEPS);
+        d.check(in + " halts", halted, () -> "still running after " + MAX_STEPS + " steps");
+        if (!halted) return;
+        d.same(in + " y", ref.getVar("y"), run.getVar("y"));
+        d.check(in + " cycles", run.getTotalCycles() <= ref.getTotalCycles(),
+                () -> run.getTotalCycles() + " > " + ref.getTotalCycles());
+    }
+}
@@ -0,0 +1,74 @@
+package s.emulator.core.check;
+
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.instructions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random programs for the differential checks in this package. Every program halts: jumps only go
+ * forward (or to EXIT), except counted loops {@code w <- k; L: w <- w - 1; y <- y; IF w != 0 GOTO L}
+ * on a variable nothing else touches. All instruction kinds appear, so expanding one to its max degree
+ * gives a basic program with plenty of GOTO, NEUTRAL and jump-to-next patterns.
+ */
+public final class RandomPrograms {
+
+    private static final String[] VARS = {"x1", "x2", "y", "z1", "z2"};
+
+    private RandomPrograms() {}
+
+    /** A halting program of roughly {@code size} instructions, reading inputs x1 and x2. */
+    public static Program halting(Random rnd, int size) {
+        return generate(rnd, size, false);
+    }
+
+    /** As {@link #halting}, but a third of the jumps may go to any label: run it with a step bound. */
+    public static Program unbounded(Random rnd, int size) {
+        return generate(rnd, size, true);
+    }
+
+    private static Program generate(Random rnd, int size, boolean backward) {
+        List<Instruction> code = new ArrayList<>();
+        int loops = 0;
+        for (int pc = 0; pc < size; pc++) {
+            String label = "L" + (pc + 1);
+            String v = VARS[rnd.nextInt(VARS.length)];
+            String next = pc + 2 > size ? "EXIT" : "L" + (pc + 2);
+            String forward = pc + 2 + rnd.nextInt(4) > size ? "EXIT"
+                    : "L" + (pc + 2 + rnd.nextInt(Math.max(1, Math.min(4, size - pc - 1))));
+            if (backward && rnd.nextInt(3) == 0) forward = "L" + (1 + rnd.nextInt(size));
+            if (rnd.nextInt(12) == 0 && pc + 3 < size) {
+                String w = "w" + (loops++);
+                code.add(new ConstantAssignment(label, w, rnd.nextInt(4)));
+                code.add(new Decrease("L" + (pc + 2), w));
+                code.add(new Neutral("L" + (pc + 3), "y"));
+                code.add(new JumpNotZero("L" + (pc + 4), w, "L" + (pc + 2)));
+                pc += 3;
+                continue;
+            }
+            switch (rnd.nextInt(13)) {
+                case 0 -> code.add(new Increase(label, v));
+                case 1 -> code.add(new Decrease(label, v));
+                case 2, 3 -> code.add(new Neutral(label, v));
+                case 4 -> code.add(new GotoLabel(label, forward));
+                case 5 -> code.add(new JumpNotZero(label, v, forward));
+                case 6 -> code.add(new JumpNotZero(label, v, next));
+                case 7 -> code.add(new JumpZero(label, v, forward));
+                case 8 -> code.add(new JumpEqualConstant(label, v, rnd.nextInt(3), forward));
+                case 9 -> code.add(new JumpEqualVariable(label, v, VARS[rnd.nextInt(VARS.length)], forward));
+                case 10 -> code.add(new ZeroVariable(label, v));
+                case 11 -> code.add(new Assignment(label, v, VARS[rnd.nextInt(VARS.length)]));
+                default -> code.add(new GotoLabel(label, next));
+            }
+        }
+        return new Program("random", code);
+    }
+
+    /** {@code p} fully expanded: only INCREASE, DECREASE, NEUTRAL and JUMP_NOT_ZERO. */
+    public static Program basic(Program p) {
+        return p.expandToDegree(p.maxExpansionDegree());
+    }
+}
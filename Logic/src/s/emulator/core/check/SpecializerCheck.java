@@ -0,0 +1,58 @@
+package s.emulator.core.check;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Interpreter;
+import s.emulator.core.Program;
+import s.emulator.core.opt.Specializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@link Specializer} against the original program: random programs at several degrees are specialized on
+ * x1, x2 or both, and the residual run on the remaining inputs, after {@code applyOffset}, must give the
+ * original run's y and total cycles.
+ *
+ * Usage: java ... s.emulator.core.check.SpecializerCheck [seed]
+ */
+public class SpecializerCheck {
+
+    private static final String[][] FIXED = {{"x1"}, {"x2"}, {"x1", "x2"}};
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("specializer");
+
+        for (int t = 0; t < 300; t++) {
+            Program p = RandomPrograms.halting(rnd, 3 + rnd.nextInt(30));
+            int max = p.maxExpansionDegree();
+            for (int deg : new int[]{0, rnd.nextInt(max + 1), max}) {
+                Program e = p.expandToDegree(deg);
+                for (String[] names : FIXED) {
+                    Map<String, Integer> fixed = new LinkedHashMap<>();
+                    for (String name : names) fixed.put(name, rnd.nextInt(5));
+                    Specializer.Result r = Specializer.specialize(e, fixed);
+                    for (int k = 0; k < 3; k++) {
+                        Map<String, Integer> inputs = new LinkedHashMap<>(fixed);
+                        inputs.putIfAbsent("x1", rnd.nextInt(5));
+                        inputs.putIfAbsent("x2", rnd.nextInt(5));
+                        String what = "#" + t + " degree " + deg + " fixed " + fixed + " inputs " + inputs;
+
+                        ExecutionManager ref = Differential.manager(e, inputs.get("x1"), inputs.get("x2"));
+                        long refCycles = Interpreter.run(ref);
+                        ExecutionManager em = new ExecutionManager(r.residual());
+                        inputs.forEach((name, v) -> {
+                            if (!fixed.containsKey(name)) em.setVar(name, v);
+                        });
+                        Interpreter.run(em);
+                        d.same(what + " y", ref.getVar("y"), em.getVar("y"));
+                        d.same(what + " cycles", refCycles, r.applyOffset(em));
+                    }
+                }
+            }
+        }
+
+        System.exit(d.finish());
+    }
+}
@@ -0,0 +1,140 @@
+package s.emulator.core.check;
+
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.StaxProgramLoader;
+import s.emulator.core.XmlProgramLoader;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes random programs as S-Program XML and loads each file with both {@link StaxProgramLoader} and the
+ * JAXB {@link XmlProgramLoader}: both must give the written instructions. Malformed documents must be
+ * refused by the streaming loader with IllegalArgumentException naming the line and column of the fault.
+ *
+ * Usage: java ... s.emulator.core.check.StaxParityCheck [seed]
+ */
+public class StaxParityCheck {
+
+    public static void main(String[] args) throws Exception {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("stax parity");
+        StaxProgramLoader stax = new StaxProgramLoader();
+        XmlProgramLoader jaxb = new XmlProgramLoader();
+
+        File file = File.createTempFile("stax-parity", ".xml");
+        try {
+            for (int t = 0; t < 200; t++) {
+                Program p = RandomPrograms.halting(rnd, 1 + rnd.nextInt(60));
+                try (OutputStream out = Files.newOutputStream(file.toPath())) {
+                    write(p, out);
+                }
+                List<String> expected = Differential.listing(p);
+                d.same("#" + t + " stax", expected, Differential.listing(stax.load(file)));
+                d.same("#" + t + " jaxb", expected, Differential.listing(jaxb.load(file)));
+            }
+        } finally {
+            file.delete();
+        }
+
+        String head = "<?xml version=\"1.0\"?>\n<S-Program name=\"bad\">\n<S-Instructions>\n";
+        String inc = "<S-Instruction type=\"basic\" name=\"INCREASE\"><S-Variable>x1</S-Variable></S-Instruction>\n";
+        String tail = "</S-Instructions>\n</S-Program>\n";
+        malformed(d, stax, "unclosed element", head + inc + "<S-Instruction type=\"basic\" name=\"INCREASE\">\n" + tail, 6);
+        malformed(d, stax, "unknown opcode", head + inc + inc
+                + "<S-Instruction type=\"basic\" name=\"TELEPORT\"><S-Variable>x1</S-Variable></S-Instruction>\n" + tail, 6);
+        malformed(d, stax, "unknown label", head + inc
+                + "<S-Instruction type=\"synthetic\" name=\"GOTO_LABEL\"><S-Variable></S-Variable>\n"
+                + "<S-Instruction-Arguments><S-Instruction-Argument name=\"gotoLabel\" value=\"L9\"/>"
+                + "</S-Instruction-Arguments></S-Instruction>\n" + inc + tail, 5);
+        malformed(d, stax, "bad constant", head
+                + "<S-Instruction type=\"synthetic\" name=\"CONSTANT_ASSIGNMENT\"><S-Variable>x1</S-Variable>\n"
+                + "<S-Instruction-Arguments><S-Instruction-Argument name=\"constantValue\" value=\"many\"/>"
+                + "</S-Instruction-Arguments></S-Instruction>\n" + tail, 4);
+        malformed(d, stax, "wrong root", "<?xml version=\"1.0\"?>\n\n<Program/>\n", 3);
+
+        System.exit(d.finish());
+    }
+
+    /** {@code xml} must be refused, with the 1-based {@code line} and a column in the message. */
+    private static void malformed(Differential d, StaxProgramLoader stax, String what, String xml, int line) {
+        String message;
+        try {
+            stax.load(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), what);
+            message = null;
+        } catch (IllegalArgumentException refused) {
+            message = refused.getMessage();
+        } catch (Exception e) {
+            message = "threw " + e;
+        }
+        String m = message;
+        d.check(what, m != null && m.contains("line " + line + ",") && m.contains("column "),
+                () -> m == null ? "loaded" : m);
+    }
+
+    /** S-Program XML for the instructions {@link RandomPrograms} generates. */
+    private static void write(Program p, OutputStream out) throws Exception {
+        XMLStreamWriter w = XMLOutputFactory.newFactory().createXMLStreamWriter(out, "UTF-8");
+        w.writeStartDocument("UTF-8", "1.0");
+        w.writeStartElement("S-Program");
+        w.writeAttribute("name", p.getName());
+        w.writeStartElement("S-Instructions");
+        for (Instruction ins : p.getInstructions()) {
+            String kind = ins.getClass().getSimpleName();
+            List<String> vars = ins.getVariables();
+            Map<String, String> args = new LinkedHashMap<>();
+            switch (kind) {
+                case "Assignment" -> args.put("assignedVariable", vars.get(1));
+                case "ConstantAssignment" -> args.put("constantValue", String.valueOf(ins.getConstant().getAsInt()));
+                case "GotoLabel" -> args.put("gotoLabel", ins.getTargetLabel());
+                case "JumpNotZero" -> args.put("JNZLabel", ins.getTargetLabel());
+                case "JumpZero" -> args.put("JZLabel", ins.getTargetLabel());
+                case "JumpEqualConstant" -> {
+                    args.put("JEConstantLabel", ins.getTargetLabel());
+                    args.put("constantValue", String.valueOf(ins.getConstant().getAsInt()));
+                }
+                case "JumpEqualVariable" -> {
+                    args.put("JEVariableLabel", ins.getTargetLabel());
+                    args.put("variableName", vars.get(1));
+                }
+                default -> { }
+            }
+            w.writeStartElement("S-Instruction");
+            w.writeAttribute("type", ins.isBasic() ? "basic" : "synthetic");
+            w.writeAttribute("name", kind.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT));
+            w.writeStartElement("S-Variable");
+            w.writeCharacters(vars.isEmpty() ? "" : vars.get(0));
+            w.writeEndElement();
+            if (ins.getLabel() != null) {
+                w.writeStartElement("S-Label");
+                w.writeCharacters(ins.getLabel());
+                w.writeEndElement();
+            }
+            if (!args.isEmpty()) {
+                w.writeStartElement("S-Instruction-Arguments");
+                for (Map.Entry<String, String> e : args.entrySet()) {
+                    w.writeEmptyElement("S-Instruction-Argument");
+                    w.writeAttribute("name", e.getKey());
+                    w.writeAttribute("value", e.getValue());
+                }
+                w.writeEndElement();
+            }
+            w.writeEndElement();
+        }
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+    }
+}
@@ -0,0 +1,108 @@
+package s.emulator.core.check;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Interpreter;
+import s.emulator.core.Program;
+import s.emulator.core.SubprogramCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Runs random programs that call random subprograms (which call further subprograms) with and without a
+ * {@link SubprogramCache}: same y, cycles and variables, and the cache must be hit. Also checks the LRU
+ * order, the eviction and hit/miss counters, and that trailing zero arguments share an entry.
+ *
+ * Usage: java ... s.emulator.core.check.SubprogramCacheCheck [seed]
+ */
+public class SubprogramCacheCheck {
+
+    public static void main(String[] args) {
+        Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Differential d = new Differential("subprogram cache");
+
+        long hits = 0;
+        for (int t = 0; t < 200; t++) {
+            Program leaf = RandomPrograms.halting(rnd, 3 + rnd.nextInt(20));
+            Program mid = withCalls(rnd, RandomPrograms.halting(rnd, 3 + rnd.nextInt(20)), leaf);
+            Program main = withCalls(rnd, RandomPrograms.halting(rnd, 3 + rnd.nextInt(30)), mid);
+            SubprogramCache cache = new SubprogramCache(1 + rnd.nextInt(8));
+            for (int k = 0; k < 5; k++) {
+                int x1 = rnd.nextInt(4), x2 = rnd.nextInt(4);
+                ExecutionManager ref = Differential.manager(main, x1, x2);
+                long refCycles = Interpreter.run(ref);
+                ExecutionManager em = Differential.manager(main, x1, x2);
+                em.setResultCache(cache);
+                d.sameRun("#" + t + " x=" + x1 + "," + x2, ref, refCycles, em, Interpreter.run(em));
+            }
+            d.check("#" + t + " looked up", cache.getHits() + cache.getMisses() >= 5, cache::toString);
+            hits += cache.getHits();
+        }
+        d.check("cache hit at all", hits > 0, () -> "no hits");
+
+        // Two entries: a, b, then a again (a is now the most recent), then c evicts b.
+        Program p = RandomPrograms.halting(rnd, 10);
+        SubprogramCache lru = new SubprogramCache(2);
+        ExecutionManager em = new ExecutionManager(p);
+        em.setResultCache(lru);
+        ExecutionManager.RunOutcome a = em.runSubprogram(p, List.of(1));
+        em.runSubprogram(p, List.of(2));
+        d.check("hit returns the stored outcome", em.runSubprogram(p, List.of(1)) == a, lru::toString);
+        em.runSubprogram(p, List.of(3));
+        d.same("evictions", 1L, lru.getEvictions());
+        d.same("size", 2, lru.size());
+        d.check("least recently used evicted", lru.get(p, List.of(2)) == null, lru::toString);
+        d.check("recently used kept", lru.get(p, List.of(1)) == a, lru::toString);
+        d.check("trailing zeros share an entry", lru.get(p, List.of(1, 0, 0)) == a, lru::toString);
+        d.same("hits", 3L, lru.getHits());
+        d.same("misses", 4L, lru.getMisses());
+        lru.clear();
+        d.same("cleared", 0, lru.size());
+
+        System.exit(d.finish());
+    }
+
+    /** {@code p} with unlabeled {@link Call}s of {@code sub} inserted: one first, a few more anywhere. */
+    private static Program withCalls(Random rnd, Program p, Program sub) {
+        List<Instruction> code = new ArrayList<>(p.getInstructions());
+        code.add(0, new Call(null, "z2", "x2", "x1", sub));
+        for (int k = rnd.nextInt(4); k > 0; k--) {
+            code.add(1 + rnd.nextInt(code.size()), new Call(null, rnd.nextBoolean() ? "y" : "z1", "x1", "x2", sub));
+        }
+        return new Program(p.getName(), code);
+    }
+
+    /** {@code V <- sub(A, B)}, costing the subprogram's cycles plus one. */
+    private static final class Call implements Instruction {
+        private final String label, variable, first, second;
+        private final Program sub;
+
+        Call(String label, String variable, String first, String second, Program sub) {
+            this.label = label;
+            this.variable = variable;
+            this.first = first;
+            this.second = second;
+            this.sub = sub;
+        }
+
+        @Override public String getLabel() { return label; }
+        @Override public int getCycles() { return 1; }
+        @Override public List<String> getVariables() { return List.of(variable, first, second); }
+
+        @Override
+        public void execute(ExecutionManager em) {
+            ExecutionManager.RunOutcome out = em.runSubprogram(sub, List.of(em.getOperand(1), em.getOperand(2)));
+            em.setOperand(0, out.getY());
+            em.addCycles(out.getCycles() + getCycles());
+            em.incPC();
+        }
+
+        @Override
+        public Instruction buildFromXml(String label, String variable, Map<String, String> args) {
+            throw new UnsupportedOperationException("check-only instruction");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Interpreter;
+import s.emulator.core.Program;
+import s.emulator.core.opt.ControlFlowGraph;
+
+import java.util.*;
+
+/**
+ * Runs a basic block per dispatch: each block of the {@link ControlFlowGraph} is linked into one op that
+ * charges the block's precomputed cycle sum on entry, runs its instructions without per-instruction cycle
+ * bookkeeping, and returns the id of the next block. Total cycles are exactly the interpreter's.
+ * Programs with instructions the threaded ops don't know fall back to the interpreter, as do runs that
+ * start in the middle of a block.
+ */
+public final class BlockEngine implements ExecutionEngine {
+
+    private final Map<Program, Optional<Linked>> linked = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** Block ops, plus the block starting at each PC (-1 inside a block) for runs not starting at 0. */
+    private static final class Linked {
+        final Op[] blocks;
+        final int[] blockAt;
+
+        Linked(Op[] blocks, int[] blockAt) {
+            this.blocks = blocks;
+            this.blockAt = blockAt;
+        }
+    }
+
+    @Override
+    public long run(ExecutionManager em) {
+        Optional<Linked> l = linked.computeIfAbsent(em.getProgram(), BlockEngine::link);
+        int pc = em.getPC();
+        if (l.isEmpty() || pc < 0 || pc >= l.get().blockAt.length || l.get().blockAt[pc] < 0) {
+            return Interpreter.run(em);
+        }
+        Op[] blocks = l.get().blocks;
+        Frame f = new Frame(em, em.registers());
+        int b = l.get().blockAt[pc];
+        while (b >= 0) {
+            b = blocks[b].exec(f);
+        }
+        em.addCycles(f.cycles);
+        em.stop();
+        return em.getTotalCycles();
+    }
+
+    private static Optional<Linked> link(Program p) {
+        List<Instruction> code = p.getInstructions();
+        for (Instruction ins : code) {
+            if (!Ops.supports(ins)) return Optional.empty();
+        }
+        ControlFlowGraph cfg = ControlFlowGraph.of(p);
+        Op[] blocks = new Op[cfg.blockCount()];
+        int[] blockAt = new int[code.size()];
+        Arrays.fill(blockAt, -1);
+        for (int b = 0; b < blocks.length; b++) {
+            int start = cfg.start(b), last = cfg.end(b) - 1;
+            blockAt[start] = b;
+            Op[] body = new Op[last - start];
+            for (int pc = start; pc < last; pc++) {
+                Instruction ins = code.get(pc);
+                body[pc - start] = Ops.build(ins, ThreadedEngine.operandSlots(p, pc, ins), pc + 1, Program.NO_TARGET, 0);
+            }
+            Op exit = Ops.build(code.get(last), ThreadedEngine.operandSlots(p, last, code.get(last)),
+                    cfg.fallSuccessor(b), cfg.jumpSuccessor(b), 0);
+            long c = cfg.cycles(b);
+            blocks[b] = body.length == 0
+                    ? f -> { f.cycles += c; return exit.exec(f); }
+                    : f -> {
+                        f.cycles += c;
+                        for (Op op : body) op.exec(f);
+                        return exit.exec(f);
+                    };
+        }
+        return Optional.of(new Linked(blocks, blockAt));
+    }
+}
@@ -0,0 +1,532 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.instructions.Decrease;
+import s.emulator.core.instructions.Increase;
+import s.emulator.core.instructions.JumpNotZero;
+import s.emulator.core.instructions.Neutral;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+/**
+ * Compiles a basic-only {@link Program} (INCREASE / DECREASE / NEUTRAL / JUMP_NOT_ZERO) into a hidden class.
+ *
+ * The program is cut into regions of consecutive instructions, each compiled to its own static method
+ * {@code int rK(int[] registers, long[] cycles, int pc)} that keeps the registers it uses in locals, runs
+ * from {@code pc} while control stays inside the region (loops included), and returns the next PC. A small
+ * dispatcher {@code long run(int[] registers, int[] regionOf)} calls the region holding the current PC until
+ * the program exits, and returns the cycles spent.
+ */
+public final class BytecodeCompiler {
+
+    private static final String CLASS_NAME = "s/emulator/core/engine/CompiledProgram$Code";
+    private static final MethodType RUN_TYPE = MethodType.methodType(long.class, int[].class, int[].class);
+
+    // HotSpot never JIT-compiles a method above 8000 bytecode bytes (-XX:-DontCompileHugeMethods aside), and
+    // an interpreted method is slower than any of our engines: every region and the dispatcher stay below it.
+    // This also keeps every branch offset well inside its signed 16 bits.
+    static final int MAX_CODE_LENGTH = 8000;
+
+    // Regions are kept well below the JIT's limit: C1 runs out of registers on a few thousand bytes of this
+    // straight-line code, and a region sitting in the interpreter while C2 catches up costs more than calls.
+    static final int MAX_REGION_LENGTH = 2000;
+    // Bytes of a region besides its instructions: prologue, entry switch header, fall-off stub and epilogue.
+    private static final int REGION_OVERHEAD = 64;
+    // Upper bounds of what one instruction and one register add to a region (see Emitter.region).
+    private static final int MAX_INSTRUCTION_BYTES = 4 + 13 + 14;
+    private static final int MAX_REGISTER_BYTES = 9 + 9;
+    // Dispatcher: 4 bytes of switch table and 10 of call per region, plus its loop.
+    static final int MAX_REGIONS = (MAX_CODE_LENGTH - 64) / 14;
+
+    private BytecodeCompiler() {}
+
+    /** True if every instruction is one of the four basic instructions this compiler understands. */
+    public static boolean canCompile(Program program) {
+        for (Instruction ins : program.getInstructions()) {
+            Class<?> c = ins.getClass();
+            if (c != Increase.class && c != Decrease.class && c != Neutral.class && c != JumpNotZero.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static CompiledProgram compile(Program program) {
+        if (!canCompile(program)) {
+            throw new IllegalArgumentException("Only fully expanded (basic) programs can be compiled: " + program.getName());
+        }
+        Emitter emitter = new Emitter(program);
+        byte[] bytes = emitter.classFile();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            MethodHandle run = lookup.findStatic(lookup.lookupClass(), "run", RUN_TYPE);
+            return new CompiledProgram(MethodHandles.insertArguments(run, 1, (Object) emitter.regionOf),
+                    program.symbols().size(), emitter.regionStart.length - 1);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to load compiled program " + program.getName(), e);
+        }
+    }
+
+    /** Writes the class file: the regions, then the dispatcher. */
+    private static final class Emitter {
+        private final Program program;
+        private final List<Instruction> insns;
+        private final int n;
+        private final int[] regionOf;    // per PC: index of its region
+        private final int[] regionStart; // per region (+1 sentinel): first PC
+        private final boolean[] entry;   // per PC: a jump target or the start of a region
+
+        private final ConstantPool pool = new ConstantPool();
+        private final int intArray, longArray, mathMax;
+
+        // State of the method being written.
+        private ByteArrayOutputStream code;
+        private SortedSet<Integer> frameOffsets;
+
+        Emitter(Program program) {
+            this.program = program;
+            this.insns = program.getInstructions();
+            this.n = insns.size();
+            this.regionOf = new int[n];
+            this.intArray = pool.classRef("[I");
+            this.longArray = pool.classRef("[J");
+            this.mathMax = pool.methodRef("java/lang/Math", "max", "(II)I");
+            this.entry = new boolean[n];
+            for (int pc = 0; pc < n; pc++) {
+                int t = program.targetOf(pc);
+                if (t >= 0 && t < n) entry[t] = true;
+            }
+
+            // Greedy partition by an upper bound of each region's code size.
+            List<Integer> starts = new ArrayList<>();
+            Set<Integer> used = new HashSet<>();
+            int size = MAX_REGION_LENGTH; // forces a region at PC 0
+            for (int pc = 0; pc < n; pc++) {
+                int slot = program.operandSlot(pc, 0);
+                int add = MAX_INSTRUCTION_BYTES + (used.contains(slot) ? 0 : MAX_REGISTER_BYTES);
+                if (size + add > MAX_REGION_LENGTH - REGION_OVERHEAD) {
+                    starts.add(pc);
+                    used.clear();
+                    size = 0;
+                    add = MAX_INSTRUCTION_BYTES + MAX_REGISTER_BYTES;
+                }
+                used.add(slot);
+                size += add;
+                regionOf[pc] = starts.size() - 1;
+            }
+            for (int start : starts) entry[start] = true;
+            if (starts.size() > MAX_REGIONS) {
+                throw new IllegalArgumentException("Program too large to compile (" + n + " instructions)");
+            }
+            this.regionStart = new int[starts.size() + 1];
+            for (int r = 0; r < starts.size(); r++) regionStart[r] = starts.get(r);
+            regionStart[starts.size()] = n;
+        }
+
+        byte[] classFile() {
+            int thisClass = pool.classRef(CLASS_NAME);
+            int superClass = pool.classRef("java/lang/Object");
+            int codeAttr = pool.utf8("Code");
+            int stackMapName = pool.utf8("StackMapTable");
+            int regions = regionStart.length - 1;
+
+            List<byte[]> methods = new ArrayList<>();
+            for (int r = 0; r < regions; r++) {
+                methods.add(method(pool.utf8("r" + r), pool.utf8("([I[JI)I"), codeAttr, stackMapName, region(r)));
+            }
+            methods.add(method(pool.utf8("run"), pool.utf8("([I[I)J"), codeAttr, stackMapName, dispatcher()));
+
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(61);                     // Java 17 class file
+                pool.writeTo(out);
+                out.writeShort(0x0031);                 // public final super
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(0);                      // interfaces
+                out.writeShort(0);                      // fields
+                out.writeShort(methods.size());
+                for (byte[] m : methods) out.write(m);
+                out.writeShort(0);                      // class attributes
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /** A method's code and frames, ready to be written. */
+        private static final class Body {
+            final byte[] code;
+            final byte[] frames;
+            final int maxStack, maxLocals;
+
+            Body(byte[] code, byte[] frames, int maxStack, int maxLocals) {
+                this.code = code;
+                this.frames = frames;
+                this.maxStack = maxStack;
+                this.maxLocals = maxLocals;
+            }
+        }
+
+        private byte[] method(int name, int desc, int codeAttr, int stackMapName, Body body) {
+            if (body.code.length > MAX_CODE_LENGTH) {
+                throw new IllegalStateException("Compiled method over " + MAX_CODE_LENGTH + " bytes: " + body.code.length);
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeShort(0x0009);                 // public static
+                out.writeShort(name);
+                out.writeShort(desc);
+                out.writeShort(1);                      // Code
+                out.writeShort(codeAttr);
+                out.writeInt(2 + 2 + 4 + body.code.length + 2 + 2 + 6 + body.frames.length);
+                out.writeShort(body.maxStack);
+                out.writeShort(body.maxLocals);
+                out.writeInt(body.code.length);
+                out.write(body.code);
+                out.writeShort(0);                      // exception table
+                out.writeShort(1);
+                out.writeShort(stackMapName);
+                out.writeInt(body.frames.length);
+                out.write(body.frames);
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Region r. Locals: 0 = int[] registers, 1 = long[] cycles, 2 = PC (entry, then next PC),
+         * 3..k+2 = the region's registers, k+3 = long cycles spent in the region.
+         */
+        private Body region(int r) {
+            code = new ByteArrayOutputStream();
+            frameOffsets = new TreeSet<>();
+            int first = regionStart[r], end = regionStart[r + 1];
+
+            Map<Integer, Integer> local = new LinkedHashMap<>(); // register slot -> local
+            Set<Integer> written = new LinkedHashSet<>();
+            for (int pc = first; pc < end; pc++) {
+                int slot = program.operandSlot(pc, 0);
+                local.putIfAbsent(slot, 3 + local.size());
+                if (!(insns.get(pc) instanceof JumpNotZero) && !(insns.get(pc) instanceof Neutral)) written.add(slot);
+            }
+            int cyclesLocal = 3 + local.size();
+
+            // Prologue: load the region's registers, zero its cycle counter, jump to the entry PC.
+            for (Map.Entry<Integer, Integer> e : local.entrySet()) {
+                op(0x2a);           // aload_0
+                pushInt(e.getKey());
+                op(0x2e);           // iaload
+                store(0x36, 0x3b, e.getValue());
+            }
+            op(0x09);               // lconst_0
+            store(0x37, 0x3f, cyclesLocal);
+            op(0x1c);               // iload_2
+            int switchAt = code.size();
+            op(0xaa);               // tableswitch
+            while (code.size() % 4 != 0) op(0);
+            int tableAt = code.size();
+            for (int k = 0; k < 3 + (end - first); k++) u4(0); // default, low, high, offsets: patched below
+
+            // Cycles are added once per straight-line run: before each jump, and before each PC a jump can enter.
+            int[] pcOffset = new int[end - first];
+            List<int[]> fixups = new ArrayList<>(); // {ifne offset, target PC}
+            int pending = 0;
+            for (int pc = first; pc < end; pc++) {
+                if (entry[pc]) {
+                    addCycles(pending, cyclesLocal);
+                    pending = 0;
+                    frameOffsets.add(code.size());
+                }
+                pcOffset[pc - first] = code.size();
+                Instruction ins = insns.get(pc);
+                pending += ins.getCycles();
+                int v = local.get(program.operandSlot(pc, 0));
+                if (ins instanceof Increase || ins instanceof Decrease) {
+                    load(0x15, 0x1a, v);
+                    op(0x04);       // iconst_1
+                    op(ins instanceof Increase ? 0x60 : 0x64); // iadd / isub
+                    op(0x03);       // iconst_0
+                    op(0xb8); u2(mathMax); // clamp at 0, like ExecutionManager.setOperand
+                    store(0x36, 0x3b, v);
+                } else if (ins instanceof JumpNotZero) {
+                    addCycles(pending, cyclesLocal);
+                    pending = 0;
+                    load(0x15, 0x1a, v);
+                    fixups.add(new int[]{code.size(), program.targetOf(pc)});
+                    op(0x9a); u2(0); // ifne, patched below
+                }
+                // Neutral: V <- V has no effect beyond its cycle.
+            }
+            addCycles(pending, cyclesLocal);
+
+            // Leaving the region: next PC into local 2, then the epilogue.
+            List<int[]> exits = new ArrayList<>(); // {goto offset}
+            int fallOff = code.size();
+            frameOffsets.add(fallOff);
+            exitTo(end < n ? end : Program.EXIT_PC, exits);
+            Map<Integer, Integer> stubs = new HashMap<>(); // target PC -> stub offset
+            byte[] patch = null;
+            for (int[] f : fixups) {
+                int target = f[1];
+                if (target >= first && target < end) continue;
+                stubs.computeIfAbsent(target, t -> {
+                    int at = code.size();
+                    frameOffsets.add(at);
+                    exitTo(t >= n ? Program.EXIT_PC : t, exits);
+                    return at;
+                });
+            }
+            int epilogue = code.size();
+            frameOffsets.add(epilogue);
+            for (int slot : written) {
+                op(0x2a);           // aload_0
+                pushInt(slot);
+                load(0x15, 0x1a, local.get(slot));
+                op(0x4f);           // iastore
+            }
+            op(0x2b);               // aload_1
+            op(0x03);               // iconst_0
+            op(0x5c);               // dup2
+            op(0x2f);               // laload
+            load(0x16, 0x1e, cyclesLocal);
+            op(0x61);               // ladd
+            op(0x50);               // lastore
+            op(0x1c);               // iload_2
+            op(0xac);               // ireturn
+
+            byte[] body = code.toByteArray();
+            for (int[] f : fixups) {
+                int t = f[1];
+                int target = t >= first && t < end ? pcOffset[t - first] : stubs.get(t);
+                putU2(body, f[0] + 1, target - f[0]);
+            }
+            for (int[] g : exits) putU2(body, g[0] + 1, epilogue - g[0]);
+            // PCs no jump enters are never passed in; they share the first PC's frame.
+            putU4(body, tableAt, pcOffset[0] - switchAt);
+            putU4(body, tableAt + 4, first);
+            putU4(body, tableAt + 8, end - 1);
+            for (int k = 0; k < end - first; k++) {
+                putU4(body, tableAt + 12 + 4 * k, (entry[first + k] ? pcOffset[k] : pcOffset[0]) - switchAt);
+            }
+
+            List<Integer> locals = new ArrayList<>();
+            locals.add(-intArray);
+            locals.add(-longArray);
+            for (int k = 0; k < 1 + local.size(); k++) locals.add(1); // PC and registers: Integer
+            locals.add(4);                                            // Long
+            return new Body(body, frames(locals), 6, cyclesLocal + 2);
+        }
+
+        /** {@code pc} into local 2 and a goto to the epilogue (patched by the caller). */
+        private void exitTo(int pc, List<int[]> exits) {
+            pushInt(pc);
+            op(0x3d);               // istore_2
+            exits.add(new int[]{code.size()});
+            op(0xa7); u2(0);        // goto
+        }
+
+        /** Locals: 0 = int[] registers, 1 = int[] regionOf, 2 = long[] cycles, 3 = PC. */
+        private Body dispatcher() {
+            code = new ByteArrayOutputStream();
+            frameOffsets = new TreeSet<>();
+            int regions = regionStart.length - 1;
+            if (regions == 0) {     // empty program
+                op(0x09);           // lconst_0
+                op(0xad);           // lreturn
+                return new Body(code.toByteArray(), frames(List.of()), 2, 2);
+            }
+            op(0x04);               // iconst_1
+            op(0xbc); op(11);       // newarray long
+            op(0x4d);               // astore_2
+            op(0x03);               // iconst_0
+            op(0x3e);               // istore_3
+
+            int loop = code.size();
+            frameOffsets.add(loop);
+            op(0x1d);               // iload_3
+            int toEnd1 = code.size();
+            op(0x9b); u2(0);        // iflt end
+            op(0x1d);               // iload_3
+            pushInt(n);
+            int toEnd2 = code.size();
+            op(0xa2); u2(0);        // if_icmpge end
+            op(0x2b);               // aload_1
+            op(0x1d);               // iload_3
+            op(0x2e);               // iaload
+            int switchAt = code.size();
+            op(0xaa);               // tableswitch
+            while (code.size() % 4 != 0) op(0);
+            int tableAt = code.size();
+            for (int k = 0; k < 3 + regions; k++) u4(0);
+
+            int[] caseOffset = new int[regions];
+            List<Integer> backJumps = new ArrayList<>();
+            for (int r = 0; r < regions; r++) {
+                caseOffset[r] = code.size();
+                frameOffsets.add(code.size());
+                op(0x2a);           // aload_0
+                op(0x2c);           // aload_2
+                op(0x1d);           // iload_3
+                op(0xb8); u2(pool.methodRef(CLASS_NAME, "r" + r, "([I[JI)I"));
+                op(0x3e);           // istore_3
+                backJumps.add(code.size());
+                op(0xa7); u2(0);    // goto loop
+            }
+            int end = code.size();
+            frameOffsets.add(end);
+            op(0x2c);               // aload_2
+            op(0x03);               // iconst_0
+            op(0x2f);               // laload
+            op(0xad);               // lreturn
+
+            byte[] body = code.toByteArray();
+            putU2(body, toEnd1 + 1, end - toEnd1);
+            putU2(body, toEnd2 + 1, end - toEnd2);
+            for (int at : backJumps) putU2(body, at + 1, loop - at);
+            putU4(body, tableAt, end - switchAt);
+            putU4(body, tableAt + 4, 0);
+            putU4(body, tableAt + 8, regions - 1);
+            for (int r = 0; r < regions; r++) putU4(body, tableAt + 12 + 4 * r, caseOffset[r] - switchAt);
+            return new Body(body, frames(List.of(-intArray, -intArray, -longArray, 1)), 4, 4);
+        }
+
+        /**
+         * StackMapTable: every branch target sees the same locals and an empty stack, so one full frame
+         * followed by same frames. {@code locals}: a verification type tag, or minus an array class index.
+         */
+        private byte[] frames(List<Integer> locals) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeShort(frameOffsets.size());
+                int prev = -1;
+                for (int offset : frameOffsets) {
+                    int delta = prev < 0 ? offset : offset - prev - 1;
+                    if (prev < 0) {
+                        out.writeByte(255);             // full_frame
+                        out.writeShort(delta);
+                        out.writeShort(locals.size());
+                        for (int t : locals) {
+                            if (t < 0) { out.writeByte(7); out.writeShort(-t); } // Object
+                            else out.writeByte(t);
+                        }
+                        out.writeShort(0);              // empty stack
+                    } else if (delta < 64) {
+                        out.writeByte(delta);           // same_frame
+                    } else {
+                        out.writeByte(251);             // same_frame_extended
+                        out.writeShort(delta);
+                    }
+                    prev = offset;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private void addCycles(int c, int cyclesLocal) {
+            if (c <= 0) return;
+            load(0x16, 0x1e, cyclesLocal);
+            if (c == 1) {
+                op(0x0a);           // lconst_1
+            } else {
+                pushInt(c);
+                op(0x85);           // i2l
+            }
+            op(0x61);               // ladd
+            store(0x37, 0x3f, cyclesLocal);
+        }
+
+        private void pushInt(int v) {
+            if (v >= -1 && v <= 5) op(0x03 + v);
+            else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) { op(0x10); op(v); }
+            else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) { op(0x11); u2(v); }
+            else { op(0x13); u2(pool.integer(v)); } // ldc_w
+        }
+
+        private void load(int opcode, int shortForm, int local) { localOp(opcode, shortForm, local); }
+        private void store(int opcode, int shortForm, int local) { localOp(opcode, shortForm, local); }
+
+        private void localOp(int opcode, int shortForm, int local) {
+            if (local <= 3) op(shortForm + local);
+            else if (local <= 255) { op(opcode); op(local); }
+            else { op(0xc4); op(opcode); u2(local); } // wide
+        }
+
+        private void op(int b) { code.write(b); }
+        private void u2(int v) { code.write(v >> 8); code.write(v); }
+        private void u4(int v) { u2(v >> 16); u2(v); }
+
+        private static void putU2(byte[] b, int at, int v) {
+            b[at] = (byte) (v >> 8);
+            b[at + 1] = (byte) v;
+        }
+
+        private static void putU4(byte[] b, int at, int v) {
+            putU2(b, at, v >> 16);
+            putU2(b, at + 2, v);
+        }
+    }
+
+    /** Minimal deduplicating constant pool. */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> index = new HashMap<>();
+        private int next = 1;
+
+        int utf8(String s) {
+            return entry("U" + s, () -> { out.writeByte(1); out.writeUTF(s); });
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return entry("C" + internalName, () -> { out.writeByte(7); out.writeShort(name); });
+        }
+
+        int integer(int v) {
+            return entry("I" + v, () -> { out.writeByte(3); out.writeInt(v); });
+        }
+
+        int methodRef(String owner, String name, String desc) {
+            int cls = classRef(owner);
+            int n = utf8(name);
+            int d = utf8(desc);
+            int nat = entry("N" + name + desc, () -> { out.writeByte(12); out.writeShort(n); out.writeShort(d); });
+            return entry("M" + owner + "." + name + desc, () -> { out.writeByte(10); out.writeShort(cls); out.writeShort(nat); });
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(next);
+            target.write(bytes.toByteArray());
+        }
+
+        private int entry(String key, Writer w) {
+            Integer existing = index.get(key);
+            if (existing != null) return existing;
+            try {
+                w.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index.put(key, next);
+            return next++;
+        }
+
+        private interface Writer { void write() throws IOException; }
+    }
+}
@@ -0,0 +1,34 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Program;
+
+import java.util.*;
+
+/**
+ * Runs basic-only programs through {@link BytecodeCompiler}, compiling each Program once.
+ * Programs that cannot be compiled (synthetic instructions, or more regions than the generated dispatcher
+ * can call within a JIT-compilable method) fall back to the threaded engine.
+ */
+public final class BytecodeEngine implements ExecutionEngine {
+
+    private final Map<Program, Optional<CompiledProgram>> compiled =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    private final ThreadedEngine fallback = new ThreadedEngine();
+
+    @Override
+    public long run(ExecutionManager em) {
+        Optional<CompiledProgram> cp = compiled.computeIfAbsent(em.getProgram(), BytecodeEngine::tryCompile);
+        if (cp.isEmpty() || em.getPC() != 0) return fallback.run(em);
+        return cp.get().run(em);
+    }
+
+    private static Optional<CompiledProgram> tryCompile(Program p) {
+        if (!BytecodeCompiler.canCompile(p)) return Optional.empty();
+        try {
+            return Optional.of(BytecodeCompiler.compile(p));
+        } catch (IllegalArgumentException tooLarge) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+
+import java.lang.invoke.MethodHandle;
+
+/** A program compiled by {@link BytecodeCompiler}; runs directly on an ExecutionManager's register file. */
+public final class CompiledProgram {
+    private final MethodHandle run;
+    private final int registers;
+    private final int regions;
+
+    CompiledProgram(MethodHandle run, int registers, int regions) {
+        this.run = run;
+        this.registers = registers;
+        this.regions = regions;
+    }
+
+    /** Number of methods the program was split into, besides the dispatcher. */
+    public int getRegions() {
+        return regions;
+    }
+
+    /** Runs from the start of the program; same y, variables and cycles as {@code Interpreter.run}. */
+    public long run(ExecutionManager em) {
+        int[] regs = em.registers();
+        if (regs.length != registers) {
+            throw new IllegalArgumentException("ExecutionManager was built for a different program");
+        }
+        long cycles;
+        try {
+            cycles = (long) run.invokeExact(regs);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+        em.addCycles(cycles);
+        em.stop();
+        return em.getTotalCycles();
+    }
+}
@@ -0,0 +1,38 @@
+package s.emulator.core.engine;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/** The selectable execution engines, by user-facing name. */
+public enum EngineKind {
+    INTERPRETER("interpreter", () -> ExecutionEngine.INTERPRETER),
+    THREADED("threaded", ThreadedEngine::new),
+    ACCELERATED("accelerated", () -> new ThreadedEngine(true)),
+    BYTECODE("bytecode", BytecodeEngine::new),
+    OPTIMIZED("optimized", OptimizedEngine::new),
+    BLOCK("block", BlockEngine::new),
+    PROFILING("profiling", ProfilingEngine::new);
+
+    private final String displayName;
+    private final Supplier<ExecutionEngine> factory;
+
+    EngineKind(String displayName, Supplier<ExecutionEngine> factory) {
+        this.displayName = displayName;
+        this.factory = factory;
+    }
+
+    public String displayName() { return displayName; }
+
+    public ExecutionEngine create() { return factory.get(); }
+
+    public static EngineKind fromName(String name) {
+        for (EngineKind k : values()) {
+            if (k.displayName.equalsIgnoreCase(name.trim())) return k;
+        }
+        throw new IllegalArgumentException("Unknown engine: " + name + " (expected one of "
+                + Arrays.stream(values()).map(EngineKind::displayName).toList() + ")");
+    }
+
+    @Override
+    public String toString() { return displayName; }
+}
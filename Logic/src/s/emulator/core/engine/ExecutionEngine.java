@@ -0,0 +1,15 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Interpreter;
+
+/** Strategy that runs {@code em.getProgram()} from the current PC to completion. */
+@FunctionalInterface
+public interface ExecutionEngine {
+
+    /** Reference engine: one {@code Instruction.execute} call per step. */
+    ExecutionEngine INTERPRETER = Interpreter::run;
+
+    /** Runs the program on {@code em} and returns its total cycles. */
+    long run(ExecutionManager em);
+}
@@ -0,0 +1,15 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+
+/** Mutable state of one threaded run: the register file and the cycles spent so far. */
+final class Frame {
+    int[] r;
+    long cycles;
+    final ExecutionManager em;
+
+    Frame(ExecutionManager em, int[] registers) {
+        this.em = em;
+        this.r = registers;
+    }
+}
@@ -0,0 +1,243 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Interpreter;
+import s.emulator.core.Program;
+import s.emulator.core.expansion.ExpansionContext;
+import s.emulator.core.expansion.ExpansionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs an unexpanded program with degree-d semantics, expanding each original instruction only when the
+ * PC first reaches it. The resulting block is linked into threaded ops and memoized for later runs.
+ *
+ * Names match {@link Program#expandToDegree}: in eager expansion the subtree of original instruction i
+ * takes a contiguous range of fresh z / L names in every round, so we count what each subtree consumes
+ * per round (memoized per expansion shape) and prefix-sum those counts up front. y, cycles and every
+ * non-zero variable match the eager run; fresh variables of blocks that never ran are simply absent.
+ *
+ * A program whose degree-d expansion has an instruction without a threaded op is found up front (from the
+ * same memoized expansion shapes) and runs eagerly expanded on the {@link Interpreter} instead.
+ */
+public final class LazyExpansionEngine implements ExecutionEngine {
+
+    /**
+     * Per expansion shape and round r: [0][r] = fresh z's the subtree consumes, [1][r] = fresh labels,
+     * [2][r] = 1 if every instruction left after round r has a threaded op.
+     */
+    private static final Map<List<Object>, int[][]> FRESH_COUNTS = new ConcurrentHashMap<>();
+
+    private final int degree;
+    private final Map<Program, LazyProgram> programs = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public LazyExpansionEngine(int degree) {
+        this.degree = Math.max(0, degree);
+    }
+
+    public int getDegree() { return degree; }
+
+    /** {@code em} must be built over the unexpanded program. */
+    @Override
+    public long run(ExecutionManager em) {
+        LazyProgram lp = programs.computeIfAbsent(em.getProgram(), p -> new LazyProgram(p, degree));
+        if (!lp.runnable) return runExpanded(em);
+        int[] regs = em.registers();
+        Op[] ops = lp.ops;
+        Frame f = new Frame(em, Arrays.copyOf(regs, lp.symbolCount()));
+        int pc = em.getPC(); // block i starts at op index i
+        while (pc >= 0) {
+            if (pc >= ops.length || ops[pc] == null) { // reallocated by a block expanded during this run
+                ops = lp.ops;
+                lp.growRegisters(f);
+            }
+            pc = ops[pc].exec(f);
+        }
+        System.arraycopy(f.r, 0, regs, 0, regs.length);
+        for (int s = regs.length; s < f.r.length; s++) {
+            if (f.r[s] != 0) em.setVar(lp.nameOf(s), f.r[s]);
+        }
+        em.addCycles(f.cycles);
+        em.stop();
+        return em.getTotalCycles();
+    }
+
+    /** The same run on the eager expansion, for programs with instructions the threaded ops can't run. */
+    private long runExpanded(ExecutionManager em) {
+        Program source = em.getProgram();
+        ExecutionManager run = em.derive(source.expandToDegree(degree));
+        em.snapshotVars().forEach(run::setVar);
+        int pc = em.getPC();
+        run.setPC(pc < source.getInstructions().size() ? source.provenance(degree).firstDescendant(pc) : pc);
+        Interpreter.run(run);
+        run.snapshotVars().forEach(em::setVar);
+        em.addCycles(run.getTotalCycles());
+        em.stop();
+        return em.getTotalCycles();
+    }
+
+    /** Whether instruction {@code ins}, expanded {@code degree} rounds, is all threaded ops. */
+    private static boolean runnable(Instruction ins, int degree) {
+        int[][] c = freshCounts(ins);
+        int rounds = Math.min(degree, c[2].length);
+        return rounds == 0 ? Ops.supports(ins) : c[2][rounds - 1] == 1;
+    }
+
+    private static int[][] freshCounts(Instruction ins) {
+        String lbl = ins.getLabel();
+        List<Object> shape = List.of(ins.getClass(), lbl != null && !lbl.isBlank(), ins.getConstant().orElse(-1));
+        return FRESH_COUNTS.computeIfAbsent(shape, k -> {
+            int rounds = ins.degree();
+            int[][] counts = new int[3][rounds];
+            List<Instruction> cur = List.of(ins);
+            for (int r = 0; r < rounds; r++) {
+                ExpansionContext ctx = new ExpansionContext(0, 0, 0);
+                cur = expandOnce(cur, ctx);
+                counts[0][r] = ctx.maxZ();
+                counts[1][r] = ctx.maxLabel();
+                boolean supported = true;
+                for (Instruction c : cur) supported &= Ops.supports(c);
+                counts[2][r] = supported ? 1 : 0;
+            }
+            return counts;
+        });
+    }
+
+    private static List<Instruction> expandOnce(List<Instruction> cur, ExpansionContext ctx) {
+        List<Instruction> next = new ArrayList<>(cur.size());
+        for (Instruction ins : cur) {
+            if (ins.isBasic()) next.add(ins);
+            else next.addAll(ExpansionTemplate.expand(ins, ctx));
+        }
+        return next;
+    }
+
+    /** Per-program state: fresh-name bases, the growing symbol table and the growing op array. */
+    private static final class LazyProgram {
+        private final Program program;
+        private final int degree;
+        private final int maxX;
+        private final int[][] zBase; // [round][i]: first fresh z counter of instruction i's subtree
+        private final int[][] lBase; // [round][i]: same for labels
+        private final boolean runnable; // every block expands to threaded ops
+
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final Op[] entries;  // materialized first op of block i, or null
+        private volatile Op[] ops;   // [0, n): block entries (stubs until materialized), then block bodies
+        private int size;
+
+        LazyProgram(Program program, int degree) {
+            List<Instruction> code = program.getInstructions();
+            int n = code.size();
+            this.program = program;
+            this.degree = Math.min(degree, program.maxExpansionDegree());
+            ExpansionContext base = ExpansionContext.fromProgram(program);
+            this.maxX = base.maxX();
+            this.zBase = new int[this.degree][n];
+            this.lBase = new int[this.degree][n];
+            boolean all = true;
+            for (Instruction ins : code) all &= runnable(ins, this.degree);
+            this.runnable = all;
+            int z = base.maxZ(), l = base.maxLabel();
+            for (int r = 0; r < this.degree; r++) {
+                for (int i = 0; i < n; i++) {
+                    zBase[r][i] = z;
+                    lBase[r][i] = l;
+                    int[][] c = freshCounts(code.get(i));
+                    if (r < c[0].length) { z += c[0][r]; l += c[1][r]; }
+                }
+            }
+            // Same slots as the program's own register file, so ExecutionManager registers map 1:1.
+            for (String name : program.symbols().names()) intern(name);
+            this.entries = new Op[n];
+            Op[] initial = new Op[Math.max(16, n * 2)];
+            for (int i = 0; i < n; i++) {
+                int block = i;
+                initial[i] = f -> {
+                    Op first = enter(block);
+                    growRegisters(f);
+                    return first.exec(f);
+                };
+            }
+            this.size = n;
+            this.ops = initial;
+        }
+
+        synchronized int symbolCount() { return names.size(); }
+
+        synchronized String nameOf(int slot) { return names.get(slot); }
+
+        void growRegisters(Frame f) {
+            int need = symbolCount();
+            if (f.r.length < need) f.r = Arrays.copyOf(f.r, need);
+        }
+
+        private int intern(String name) {
+            Integer s = slots.get(name);
+            if (s != null) return s;
+            slots.put(name, names.size());
+            names.add(name);
+            return names.size() - 1;
+        }
+
+        /** First op of block i, expanding and linking the block on first entry. */
+        synchronized Op enter(int i) {
+            if (entries[i] == null) materialize(i);
+            return entries[i];
+        }
+
+        private void materialize(int i) {
+            List<Instruction> block = expandBlock(i);
+            int m = block.size();
+            int n = entries.length;
+
+            int[] global = new int[m];
+            global[0] = i;
+            for (int k = 1; k < m; k++) global[k] = size++;
+            Op[] arr = ops;
+            if (size > arr.length) arr = Arrays.copyOf(arr, Math.max(size, arr.length * 2));
+
+            // Original labels sit at their block's start; fresh labels are local to the block.
+            Map<String, Integer> local = new HashMap<>();
+            for (int k = 0; k < m; k++) {
+                String lbl = block.get(k).getLabel();
+                if (lbl != null && !lbl.isBlank()) local.putIfAbsent(lbl, k);
+            }
+
+            for (int k = 0; k < m; k++) {
+                Instruction ins = block.get(k);
+                int next = k + 1 < m ? global[k + 1] : (i + 1 < n ? i + 1 : Program.EXIT_PC);
+                int[] s = new int[ins.getVariables().size()];
+                for (int v = 0; v < s.length; v++) s[v] = intern(ins.getVariables().get(v));
+                arr[global[k]] = Ops.build(ins, s, next, resolve(ins.getTargetLabel(), local, global));
+            }
+            entries[i] = arr[i];
+            ops = arr;
+        }
+
+        private int resolve(String label, Map<String, Integer> local, int[] global) {
+            if (label == null || label.isBlank()) return Program.NO_TARGET;
+            if ("EXIT".equalsIgnoreCase(label)) return Program.EXIT_PC;
+            OptionalInt original = program.lookupLabel(label);
+            if (original.isPresent()) return original.getAsInt();
+            Integer k = local.get(label);
+            if (k == null) throw new IllegalStateException("Unknown label: " + label);
+            return global[k];
+        }
+
+        /** Instruction i expanded {@code degree} rounds, using the fresh-name ranges eager expansion would. */
+        private List<Instruction> expandBlock(int i) {
+            List<Instruction> cur = List.of(program.getInstructions().get(i));
+            for (int r = 0; r < degree; r++) {
+                boolean basic = true;
+                for (Instruction ins : cur) basic &= ins.isBasic();
+                if (basic) break;
+                cur = expandOnce(cur, new ExpansionContext(maxX, zBase[r][i], lBase[r][i]));
+            }
+            return cur;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.instructions.Decrease;
+import s.emulator.core.instructions.Increase;
+import s.emulator.core.instructions.JumpNotZero;
+import s.emulator.core.instructions.Neutral;
+
+import java.util.*;
+
+/**
+ * Finds counting loops in basic code and runs their iterations in O(1).
+ *
+ * A loop is a back edge {@code JNZ t -> h} plus the single straight path from {@code h} back to it,
+ * made only of INCREASE / DECREASE / NEUTRAL and JUMP_NOT_ZEROs whose "stay in the loop" direction is
+ * known (taken forward inside the loop, or falling through when the target is outside it). This is the
+ * shape ZeroVariable, Assignment and JumpEqualConstant expand into, but it is matched on the CFG only.
+ *
+ * Within an iteration every variable moves by a fixed delta as long as no DECREASE hits 0, no INCREASE
+ * overflows and every guard keeps the path. {@link Loop#accelerate} computes how many whole iterations
+ * are guaranteed to satisfy that from the current registers and applies them at once; the rest
+ * (the exiting iteration) runs normally, so variables and cycles stay exact.
+ */
+final class LoopAccelerator {
+
+    // Step kinds along the loop path.
+    private static final int INC = 0, DEC = 1, NONZERO = 2, ZERO = 3;
+
+    // Below this many iterations, stepping is as cheap as the arithmetic.
+    private static final long MIN_ITERATIONS = 2;
+
+    private LoopAccelerator() {}
+
+    /** Loops of {@code p} keyed by header PC. */
+    static Map<Integer, Loop> find(Program p) {
+        Map<Integer, Loop> loops = new HashMap<>();
+        List<Instruction> code = p.getInstructions();
+        for (int b = 0; b < code.size(); b++) {
+            if (!(code.get(b) instanceof JumpNotZero)) continue;
+            int h = p.targetOf(b);
+            if (h < 0 || h > b || loops.containsKey(h)) continue;
+            Loop loop = trace(p, h, b);
+            if (loop != null) loops.put(h, loop);
+        }
+        return loops;
+    }
+
+    private static Loop trace(Program p, int h, int b) {
+        List<Instruction> code = p.getInstructions();
+        List<int[]> steps = new ArrayList<>(); // {kind, slot}
+        long cost = 0;
+        int pc = h;
+        while (true) {
+            Instruction ins = code.get(pc);
+            Class<?> c = ins.getClass();
+            cost += ins.getCycles();
+            if (c == Increase.class || c == Decrease.class) {
+                steps.add(new int[]{c == Increase.class ? INC : DEC, p.operandSlot(pc, 0)});
+                pc++;
+            } else if (c == Neutral.class) {
+                pc++;
+            } else if (c == JumpNotZero.class) {
+                int t = p.targetOf(pc);
+                int slot = p.operandSlot(pc, 0);
+                if (pc == b) {
+                    steps.add(new int[]{NONZERO, slot});
+                    break;                                  // back edge closes the loop
+                } else if (t > pc && t <= b) {
+                    steps.add(new int[]{NONZERO, slot});
+                    pc = t;
+                } else if (t < h || t > b) {
+                    steps.add(new int[]{ZERO, slot});
+                    pc++;
+                } else {
+                    return null;                            // inner backward jump: nested loop
+                }
+            } else {
+                return null;
+            }
+            if (pc > b) return null;
+        }
+        return new Loop(steps, cost);
+    }
+
+    /** One recognized loop, pre-digested into per-step (slot, delta-so-far) and per-iteration deltas. */
+    static final class Loop {
+        private final int[] kind;
+        private final int[] slot;
+        private final int[] pre;          // delta of slot[i] accumulated before step i
+        private final int[] touched;      // distinct slots modified by the loop
+        private final int[] delta;        // per-iteration delta of touched[j]
+        private final int[] deltaOfStep;  // per-iteration delta of slot[i]
+        private final long cost;
+
+        Loop(List<int[]> steps, long cost) {
+            int n = steps.size();
+            this.kind = new int[n];
+            this.slot = new int[n];
+            this.pre = new int[n];
+            this.deltaOfStep = new int[n];
+            this.cost = cost;
+            Map<Integer, Integer> running = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                kind[i] = steps.get(i)[0];
+                slot[i] = steps.get(i)[1];
+                pre[i] = running.getOrDefault(slot[i], 0);
+                if (kind[i] == INC) running.merge(slot[i], 1, Integer::sum);
+                if (kind[i] == DEC) running.merge(slot[i], -1, Integer::sum);
+            }
+            for (int i = 0; i < n; i++) deltaOfStep[i] = running.getOrDefault(slot[i], 0);
+            this.touched = running.keySet().stream().mapToInt(Integer::intValue).toArray();
+            this.delta = running.values().stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /** Applies as many whole iterations as are provably linear from the current registers. */
+        void accelerate(Frame f) {
+            int[] r = f.r;
+            long n = Long.MAX_VALUE;
+            for (int i = 0; i < kind.length && n >= MIN_ITERATIONS; i++) {
+                long value = (long) r[slot[i]] + pre[i];  // value just before step i, first iteration
+                int d = deltaOfStep[i];
+                switch (kind[i]) {
+                    case DEC, NONZERO -> n = Math.min(n, atLeastOne(value, d));
+                    case INC -> n = Math.min(n, noOverflow(value + 1, d));
+                    case ZERO -> { if (d != 0 || value != 0) n = 0; }
+                }
+            }
+            if (n < MIN_ITERATIONS || n == Long.MAX_VALUE) return; // too short, or a genuine infinite loop
+            for (int j = 0; j < touched.length; j++) {
+                r[touched[j]] = (int) (r[touched[j]] + n * delta[j]);
+            }
+            f.cycles += n * cost;
+        }
+
+        /** Iterations i >= 0 for which value + i*d >= 1 holds. */
+        private static long atLeastOne(long value, int d) {
+            if (value < 1) return 0;
+            if (d >= 0) return Long.MAX_VALUE;
+            return (value - 1) / -d + 1;
+        }
+
+        /** Iterations i >= 0 for which value + i*d <= Integer.MAX_VALUE holds. */
+        private static long noOverflow(long value, int d) {
+            if (value > Integer.MAX_VALUE) return 0;
+            if (d <= 0) return Long.MAX_VALUE;
+            return (Integer.MAX_VALUE - value) / d + 1;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package s.emulator.core.engine;
+
+/** One pre-linked instruction: executes against the frame and returns the next PC (EXIT_PC to stop). */
+@FunctionalInterface
+interface Op {
+    int exec(Frame f);
+}
@@ -0,0 +1,95 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.instructions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Builds threaded {@link Op}s: one specialized closure per instruction class, operands bound up front. */
+final class Ops {
+
+    @FunctionalInterface
+    interface OpFactory {
+        /** {@code s} = operand register slots, {@code next}/{@code target} = resolved PCs, {@code c} = cycles. */
+        Op make(Instruction ins, int[] s, int next, int target, int c);
+    }
+
+    private static final Map<Class<?>, OpFactory> FACTORIES = new HashMap<>();
+    static {
+        // BASIC
+        FACTORIES.put(Increase.class, (ins, s, next, target, c) -> {
+            int v = s[0];
+            return f -> { f.cycles += c; f.r[v] = Math.max(0, f.r[v] + 1); return next; };
+        });
+        FACTORIES.put(Decrease.class, (ins, s, next, target, c) -> {
+            int v = s[0];
+            return f -> { f.cycles += c; f.r[v] = Math.max(0, f.r[v] - 1); return next; };
+        });
+        FACTORIES.put(Neutral.class, (ins, s, next, target, c) ->
+                f -> { f.cycles += c; return next; });
+        FACTORIES.put(JumpNotZero.class, (ins, s, next, target, c) -> {
+            int v = s[0];
+            return f -> { f.cycles += c; return f.r[v] != 0 ? target : next; };
+        });
+
+        // SYNTHETIC (executed directly, same semantics as their execute())
+        FACTORIES.put(ZeroVariable.class, (ins, s, next, target, c) -> {
+            int v = s[0];
+            return f -> { f.cycles += c; f.r[v] = 0; return next; };
+        });
+        FACTORIES.put(ConstantAssignment.class, (ins, s, next, target, c) -> {
+            int v = s[0], k = ins.getConstant().getAsInt();
+            return f -> { f.cycles += c; f.r[v] = k; return next; };
+        });
+        FACTORIES.put(Assignment.class, (ins, s, next, target, c) -> {
+            int dst = s[0], src = s[1];
+            return f -> { f.cycles += c; f.r[dst] = f.r[src]; return next; };
+        });
+        FACTORIES.put(GotoLabel.class, (ins, s, next, target, c) ->
+                f -> { f.cycles += c; return target; });
+        FACTORIES.put(JumpZero.class, (ins, s, next, target, c) -> {
+            int v = s[0];
+            return f -> { f.cycles += c; return f.r[v] == 0 ? target : next; };
+        });
+        FACTORIES.put(JumpEqualConstant.class, (ins, s, next, target, c) -> {
+            int v = s[0], k = ins.getConstant().getAsInt();
+            return f -> { f.cycles += c; return f.r[v] == k ? target : next; };
+        });
+        FACTORIES.put(JumpEqualVariable.class, (ins, s, next, target, c) -> {
+            int a = s[0], b = s[1];
+            return f -> { f.cycles += c; return f.r[a] == f.r[b] ? target : next; };
+        });
+    }
+
+    private Ops() {}
+
+    static boolean supports(Instruction ins) {
+        return FACTORIES.containsKey(ins.getClass());
+    }
+
+    static Op build(Instruction ins, int[] slots, int next, int target) {
+        return build(ins, slots, next, target, ins.getCycles());
+    }
+
+    /** As above, but charging {@code cycles} instead of the instruction's own (0 when the caller batches them). */
+    static Op build(Instruction ins, int[] slots, int next, int target, int cycles) {
+        OpFactory factory = FACTORIES.get(ins.getClass());
+        if (factory == null) {
+            throw new IllegalArgumentException("No threaded op for " + ins.getClass().getSimpleName());
+        }
+        return factory.make(ins, slots, next, target, cycles);
+    }
+
+    /** Op for an instruction class we do not know: runs its own execute() at {@code pc} of the manager's program. */
+    static Op delegate(Instruction ins, int pc) {
+        return f -> {
+            ExecutionManager em = f.em;
+            em.setPC(pc);
+            ins.execute(em);
+            return em.isRunning() ? em.getPC() : Program.EXIT_PC;
+        };
+    }
+}
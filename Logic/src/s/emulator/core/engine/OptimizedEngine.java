@@ -0,0 +1,85 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Interpreter;
+import s.emulator.core.Program;
+import s.emulator.core.opt.DeadCodeElimination;
+import s.emulator.core.opt.OptimizedProgram;
+
+import java.util.*;
+
+/**
+ * Threaded engine over {@link DeadCodeElimination}'s output: removed instructions are never dispatched,
+ * but their cycles are charged on the edges that skip them, so y, variables and total cycles are exactly
+ * the interpreter's. Programs with instructions the threaded ops don't know fall back to the interpreter.
+ */
+public final class OptimizedEngine implements ExecutionEngine {
+
+    // Sentinel "next PCs" handed to a base op whose edges carry extra cycles.
+    private static final int FALL = -3, TAKEN = -4;
+
+    private final Map<Program, Optional<Linked>> linked = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** Ops of the optimized program; holds no reference to the Program, which keys the weak cache. */
+    private static final class Linked {
+        final Op[] ops;
+        final int entry;
+        final long entryCost;
+
+        Linked(Op[] ops, int entry, long entryCost) {
+            this.ops = ops;
+            this.entry = entry;
+            this.entryCost = entryCost;
+        }
+    }
+
+    /** What this engine runs for {@code p} (not cached; for reporting). */
+    public OptimizedProgram optimized(Program p) {
+        return DeadCodeElimination.run(p);
+    }
+
+    @Override
+    public long run(ExecutionManager em) {
+        Optional<Linked> l = linked.computeIfAbsent(em.getProgram(), OptimizedEngine::link);
+        if (l.isEmpty() || em.getPC() != 0) return Interpreter.run(em);
+        Op[] ops = l.get().ops;
+        Frame f = new Frame(em, em.registers());
+        f.cycles = l.get().entryCost;
+        int pc = l.get().entry;
+        while (pc >= 0 && pc < ops.length) {
+            pc = ops[pc].exec(f);
+        }
+        em.addCycles(f.cycles);
+        em.stop();
+        return em.getTotalCycles();
+    }
+
+    private static Optional<Linked> link(Program p) {
+        for (Instruction ins : p.getInstructions()) {
+            if (!Ops.supports(ins)) return Optional.empty();
+        }
+        OptimizedProgram opt = DeadCodeElimination.run(p);
+        Op[] ops = new Op[opt.size()];
+        for (int i = 0; i < ops.length; i++) {
+            Instruction ins = opt.instruction(i);
+            int[] slots = ThreadedEngine.operandSlots(p, opt.originalPc(i), ins);
+            int fall = opt.fallNext(i), taken = opt.takenNext(i);
+            long fc = opt.fallCost(i), tc = opt.takenCost(i);
+            if (fc == 0 && tc == 0) {
+                ops[i] = Ops.build(ins, slots, fall, taken);
+            } else {
+                Op base = Ops.build(ins, slots, FALL, TAKEN);
+                ops[i] = f -> {
+                    if (base.exec(f) == FALL) {
+                        f.cycles += fc;
+                        return fall;
+                    }
+                    f.cycles += tc;
+                    return taken;
+                };
+            }
+        }
+        return Optional.of(new Linked(ops, opt.entry(), opt.entryCost()));
+    }
+}
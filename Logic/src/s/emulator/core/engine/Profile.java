@@ -0,0 +1,63 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.Program;
+import s.emulator.core.Provenance;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/** Executions and cycles per PC of one profiled run (see {@link ProfilingEngine}). */
+public final class Profile {
+
+    private final Program program;
+    private final long[] executions;
+    private final long[] cycles;
+
+    Profile(Program program, long[] executions, long[] cycles) {
+        this.program = program;
+        this.executions = executions;
+        this.cycles = cycles;
+    }
+
+    public Program program() { return program; }
+
+    public int size() { return executions.length; }
+
+    public long executions(int pc) { return executions[pc]; }
+
+    public long cycles(int pc) { return cycles[pc]; }
+
+    public long totalExecutions() { return Arrays.stream(executions).sum(); }
+
+    public long totalCycles() { return Arrays.stream(cycles).sum(); }
+
+    /** Up to {@code limit} PCs that ran at least once, most cycles first (ties by PC). */
+    public int[] hottest(int limit) {
+        return IntStream.range(0, size())
+                .filter(pc -> executions[pc] > 0)
+                .boxed()
+                .sorted((a, b) -> cycles[a] != cycles[b] ? Long.compare(cycles[b], cycles[a]) : Integer.compare(a, b))
+                .limit(limit)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * This profile summed per instruction of {@code original}, given the provenance of the profiled
+     * (expanded) program. An original instruction's executions are those of its first descendant, i.e. how
+     * often its expansion was entered at the top.
+     */
+    public Profile byOrigin(Program original, Provenance provenance) {
+        if (provenance.size() != size()) {
+            throw new IllegalArgumentException("Provenance covers " + provenance.size() + " PCs, profile " + size());
+        }
+        int n = original.getInstructions().size();
+        long[] ex = new long[n], cy = new long[n];
+        for (int i = 0; i < n; i++) {
+            int from = provenance.firstDescendant(i), count = provenance.descendantCount(i);
+            if (count > 0) ex[i] = executions[from];
+            for (int pc = from; pc < from + count; pc++) cy[i] += cycles[pc];
+        }
+        return new Profile(original, ex, cy);
+    }
+}
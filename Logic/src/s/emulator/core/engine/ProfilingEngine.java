@@ -0,0 +1,44 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Program;
+
+import java.util.*;
+
+/**
+ * {@link ThreadedEngine} with per-PC execution and cycle counters in plain {@code long[]}s.
+ * It is its own engine, with its own dispatch loop, so the other engines pay nothing for profiling.
+ * Counters are per run; {@link #lastProfile()} is the most recent one.
+ */
+public final class ProfilingEngine implements ExecutionEngine {
+
+    private final Map<Program, Op[]> linked = Collections.synchronizedMap(new WeakHashMap<>());
+    private volatile Profile last;
+
+    @Override
+    public long run(ExecutionManager em) {
+        Program p = em.getProgram();
+        Op[] ops = linked.computeIfAbsent(p, q -> ThreadedEngine.link(q, false));
+        long[] executions = new long[ops.length];
+        long[] cycles = new long[ops.length];
+        Frame f = new Frame(em, em.registers());
+        int pc = em.getPC();
+        while (pc >= 0 && pc < ops.length) {
+            // delegated ops charge the manager directly, so count both
+            long before = f.cycles + em.getTotalCycles();
+            int next = ops[pc].exec(f);
+            executions[pc]++;
+            cycles[pc] += f.cycles + em.getTotalCycles() - before;
+            pc = next;
+        }
+        em.addCycles(f.cycles);
+        em.stop();
+        last = new Profile(p, executions, cycles);
+        return em.getTotalCycles();
+    }
+
+    /** Profile of the most recent run, or null before the first. */
+    public Profile lastProfile() {
+        return last;
+    }
+}
@@ -0,0 +1,63 @@
+package s.emulator.core.engine;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+
+import java.util.*;
+
+/**
+ * Closure-threaded engine: every instruction is pre-compiled into an {@link Op} with its operand slots,
+ * next PC and jump PC bound at build time, so a run is a tight loop over an array of ops.
+ * Optionally, loop headers found by {@link LoopAccelerator} first skip all provably linear iterations.
+ */
+public final class ThreadedEngine implements ExecutionEngine {
+
+    private final boolean accelerateLoops;
+    private final Map<Program, Op[]> linked = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public ThreadedEngine() {
+        this(false);
+    }
+
+    public ThreadedEngine(boolean accelerateLoops) {
+        this.accelerateLoops = accelerateLoops;
+    }
+
+    @Override
+    public long run(ExecutionManager em) {
+        Op[] ops = linked.computeIfAbsent(em.getProgram(), p -> link(p, accelerateLoops));
+        Frame f = new Frame(em, em.registers());
+        int pc = em.getPC();
+        while (pc >= 0 && pc < ops.length) {
+            pc = ops[pc].exec(f);
+        }
+        em.addCycles(f.cycles);
+        em.stop();
+        return em.getTotalCycles();
+    }
+
+    static Op[] link(Program p, boolean accelerateLoops) {
+        List<Instruction> code = p.getInstructions();
+        Op[] ops = new Op[code.size()];
+        for (int pc = 0; pc < ops.length; pc++) {
+            Instruction ins = code.get(pc);
+            ops[pc] = Ops.supports(ins)
+                    ? Ops.build(ins, operandSlots(p, pc, ins), pc + 1, p.targetOf(pc))
+                    : Ops.delegate(ins, pc);
+        }
+        if (accelerateLoops) {
+            LoopAccelerator.find(p).forEach((header, loop) -> {
+                Op body = ops[header];
+                ops[header] = f -> { loop.accelerate(f); return body.exec(f); };
+            });
+        }
+        return ops;
+    }
+
+    static int[] operandSlots(Program p, int pc, Instruction ins) {
+        int[] slots = new int[ins.getVariables().size()];
+        for (int i = 0; i < slots.length; i++) slots[i] = p.operandSlot(pc, i);
+        return slots;
+    }
+}
@@ -1,9 +1,7 @@
 package s.emulator.core.expansion;
 
-import s.emulator.core.Instruction;
 import s.emulator.core.Program;
-
-import java.lang.reflect.Field;
+import s.emulator.core.SymbolTable;
 
 public final class ExpansionContext {
 
@@ -16,38 +14,36 @@ public final class ExpansionContext {
     }
 
     public static ExpansionContext fromProgram(Program p) {
-        int x = 0, z = 0, l = 0;
-        for (Instruction ins : p.getInstructions()) {
-            String lbl = ins.getLabel();
-            if (lbl != null && lbl.startsWith("L")) {
-                try { l = Math.max(l, Integer.parseInt(lbl.substring(1))); } catch (Exception ignore) {}
-            }
-            for (Field f : ins.getClass().getDeclaredFields()) {
-                if (f.getType() != String.class) continue;
-                f.setAccessible(true);
-                try {
-                    Object v = f.get(ins);
-                    if (!(v instanceof String s)) continue;
-                    if (s.startsWith("z")) { try { z = Math.max(z, Integer.parseInt(s.substring(1))); } catch (Exception ignore) {} }
-                    if (s.startsWith("x")) { try { x = Math.max(x, Integer.parseInt(s.substring(1))); } catch (Exception ignore) {} }
-                } catch (IllegalAccessException ignore) {}
-            }
-        }
-        return new ExpansionContext(x, z, l);
+        SymbolTable symbols = p.symbols();
+        return new ExpansionContext(symbols.maxIndex(SymbolTable.Kind.X), symbols.maxIndex(SymbolTable.Kind.Z),
+                symbols.maxLabelIndex());
+    }
+
+    /** Independent context with the same counters. */
+    public ExpansionContext copy() {
+        return new ExpansionContext(maxX, maxZ, maxLabel);
     }
 
     public String freshZ() { maxZ += 1; return "z" + maxZ; }
     public String freshLabel() { maxLabel += 1; return "L" + maxLabel; }
 
+    /** Claims the next {@code n} fresh z's at once and returns the counter before them (z(base+1)..z(base+n)). */
+    public int reserveZ(int n) { int base = maxZ; maxZ += n; return base; }
+    /** Same as {@link #reserveZ} for labels. */
+    public int reserveLabels(int n) { int base = maxLabel; maxLabel += n; return base; }
+
     public String mapVar(String v) {
         if (v == null || v.isBlank() || "y".equals(v)) return v;
-        if (v.startsWith("z")) { try { return "z" + (Integer.parseInt(v.substring(1)) + maxZ); } catch (Exception ignore) {} }
-        if (v.startsWith("x")) { try { return "x" + (Integer.parseInt(v.substring(1)) + maxX); } catch (Exception ignore) {} }
+        int i = SymbolTable.numericSuffix(v);
+        if (i < 0) return v;
+        if (v.startsWith("z")) return "z" + (i + maxZ);
+        if (v.startsWith("x")) return "x" + (i + maxX);
         return v;
     }
     public String mapLabel(String L) {
         if (L == null || L.isBlank() || "EXIT".equalsIgnoreCase(L)) return L;
-        if (L.startsWith("L")) { try { return "L" + (Integer.parseInt(L.substring(1)) + maxLabel); } catch (Exception ignore) {} }
+        int i = SymbolTable.numericSuffix(L);
+        if (L.startsWith("L") && i >= 0) return "L" + (i + maxLabel);
         return L;
     }
 
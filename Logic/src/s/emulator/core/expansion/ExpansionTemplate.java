@@ -0,0 +1,185 @@
+package s.emulator.core.expansion;
+
+import s.emulator.core.Instruction;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * One instruction shape's expansion, recorded once by expanding a copy whose label, target and operands
+ * are placeholders, with fresh names numbered from 0. Instantiating it substitutes the real names and a
+ * reserved block of fresh z / L ids, giving exactly what {@code ins.expand(ctx)} would.
+ *
+ * Shapes whose expansion can't be captured this way (no {@link Instruction#withOperands}, literal names
+ * in the output, blank labels) just fall back to {@code expand}.
+ */
+public final class ExpansionTemplate {
+
+    /** Constants from here up are expanded directly rather than each keeping a template. */
+    static final int MAX_CACHED_CONSTANT = 64;
+
+    private static final ClassValue<Shapes> CACHE = new ClassValue<>() {
+        @Override protected Shapes computeValue(Class<?> type) { return new Shapes(); }
+    };
+
+    // Placeholder prefix: NUL cannot appear in a name read from XML.
+    private static final String PARAM = "\u0000";
+
+    // Name tokens: 0 = null, n > 0 = fresh name #n, n < 0 = parameter -n-1 of [label, target, var0, var1, ...]
+    private final Instruction[] shapes;
+    private final int[] labelTok;
+    private final int[] targetTok;
+    private final int[][] varTok;
+    private final int freshZ;
+    private final int freshLabels;
+    private final int arity;
+
+    private ExpansionTemplate(Instruction[] shapes, int[] labelTok, int[] targetTok, int[][] varTok,
+                              int freshZ, int freshLabels, int arity) {
+        this.arity = arity;
+        this.shapes = shapes;
+        this.labelTok = labelTok;
+        this.targetTok = targetTok;
+        this.varTok = varTok;
+        this.freshZ = freshZ;
+        this.freshLabels = freshLabels;
+    }
+
+    /** Same result as {@code ins.expand(ctx)}, instantiated from the cached template for its shape. */
+    public static List<Instruction> expand(Instruction ins, ExpansionContext ctx) {
+        Optional<ExpansionTemplate> t = templateOf(ins);
+        return t.isPresent() ? t.get().instantiate(ins, ctx) : ins.expand(ctx);
+    }
+
+    /**
+     * Templates of one instruction class, by (has label, has target) and, for classes with one, the constant.
+     * A template holds the whole expansion (k + 1 instructions for {@code V <- k}), so only constants
+     * below {@link #MAX_CACHED_CONSTANT} get one; larger ones expand directly.
+     */
+    private static final class Shapes {
+        private final AtomicReferenceArray<Optional<ExpansionTemplate>> plain = new AtomicReferenceArray<>(4);
+        private final List<Map<Integer, Optional<ExpansionTemplate>>> byConstant = List.of(
+                new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+        Optional<ExpansionTemplate> lookup(Instruction ins) {
+            int flags = (ins.getLabel() != null ? 1 : 0) | (ins.getTargetLabel() != null ? 2 : 0);
+            OptionalInt k = ins.getConstant();
+            if (k.isEmpty()) {
+                Optional<ExpansionTemplate> t = plain.get(flags);
+                if (t == null) plain.set(flags, t = record(ins)); // racing threads record the same template
+                return t;
+            }
+            int c = k.getAsInt();
+            if (c < 0 || c >= MAX_CACHED_CONSTANT) return Optional.empty();
+            return byConstant.get(flags).computeIfAbsent(c, key -> record(ins));
+        }
+    }
+
+    /** Fresh z's {@code expand(ins, ctx)} will take from the context, without expanding. */
+    public static int freshZ(Instruction ins) {
+        Optional<ExpansionTemplate> t = templateOf(ins);
+        if (t.isPresent()) return t.get().freshZ;
+        ExpansionContext dry = new ExpansionContext(0, 0, 0);
+        ins.expand(dry);
+        return dry.maxZ();
+    }
+
+    /** Fresh labels {@code expand(ins, ctx)} will take from the context, without expanding. */
+    public static int freshLabels(Instruction ins) {
+        Optional<ExpansionTemplate> t = templateOf(ins);
+        if (t.isPresent()) return t.get().freshLabels;
+        ExpansionContext dry = new ExpansionContext(0, 0, 0);
+        ins.expand(dry);
+        return dry.maxLabel();
+    }
+
+    private static Optional<ExpansionTemplate> templateOf(Instruction ins) {
+        if (isBlank(ins.getLabel()) || isBlank(ins.getTargetLabel())) return Optional.empty();
+        Optional<ExpansionTemplate> t = CACHE.get(ins.getClass()).lookup(ins);
+        return t.isPresent() && t.get().arity == ins.getVariables().size() ? t : Optional.empty();
+    }
+
+    private static boolean isBlank(String s) {
+        return s != null && s.isBlank();
+    }
+
+    private static Optional<ExpansionTemplate> record(Instruction ins) {
+        Map<String, Integer> params = new HashMap<>();
+        String label = ins.getLabel() == null ? null : PARAM + "label";
+        String target = ins.getTargetLabel() == null ? null : PARAM + "target";
+        List<String> vars = new ArrayList<>();
+        if (label != null) params.put(label, -1);
+        if (target != null) params.put(target, -2);
+        for (int i = 0; i < ins.getVariables().size(); i++) {
+            vars.add(PARAM + "v" + i);
+            params.put(vars.get(i), -3 - i);
+        }
+
+        ExpansionContext ctx = new ExpansionContext(0, 0, 0);
+        List<Instruction> out;
+        try {
+            out = ins.withOperands(label, vars, target).expand(ctx);
+            for (Instruction c : out) c.withOperands(c.getLabel(), c.getVariables(), c.getTargetLabel());
+        } catch (UnsupportedOperationException e) {
+            return Optional.empty();
+        }
+
+        int n = out.size();
+        int[] labelTok = new int[n], targetTok = new int[n];
+        int[][] varTok = new int[n][];
+        for (int k = 0; k < n; k++) {
+            Instruction c = out.get(k);
+            labelTok[k] = token(c.getLabel(), "L", ctx.maxLabel(), params);
+            targetTok[k] = token(c.getTargetLabel(), "L", ctx.maxLabel(), params);
+            List<String> cv = c.getVariables();
+            varTok[k] = new int[cv.size()];
+            for (int v = 0; v < cv.size(); v++) varTok[k][v] = token(cv.get(v), "z", ctx.maxZ(), params);
+            if (labelTok[k] == Integer.MIN_VALUE || targetTok[k] == Integer.MIN_VALUE
+                    || Arrays.stream(varTok[k]).anyMatch(t -> t == Integer.MIN_VALUE)) {
+                return Optional.empty(); // a literal name we can't substitute
+            }
+        }
+        return Optional.of(new ExpansionTemplate(out.toArray(new Instruction[0]), labelTok, targetTok, varTok,
+                ctx.maxZ(), ctx.maxLabel(), vars.size()));
+    }
+
+    /** Token for {@code name}, or Integer.MIN_VALUE if it is neither null, a parameter nor a fresh name. */
+    private static int token(String name, String prefix, int fresh, Map<String, Integer> params) {
+        if (name == null) return 0;
+        Integer p = params.get(name);
+        if (p != null) return p;
+        if (name.startsWith(prefix)) {
+            try {
+                int id = Integer.parseInt(name.substring(prefix.length()));
+                if (id >= 1 && id <= fresh) return id;
+            } catch (NumberFormatException ignore) {}
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    private List<Instruction> instantiate(Instruction ins, ExpansionContext ctx) {
+        List<String> vars = ins.getVariables();
+        String[] params = new String[2 + vars.size()];
+        params[0] = ins.getLabel();
+        params[1] = ins.getTargetLabel();
+        for (int i = 0; i < vars.size(); i++) params[2 + i] = vars.get(i);
+        int zBase = ctx.reserveZ(freshZ);
+        int lBase = ctx.reserveLabels(freshLabels);
+
+        List<Instruction> out = new ArrayList<>(shapes.length);
+        for (int k = 0; k < shapes.length; k++) {
+            String[] cv = new String[varTok[k].length];
+            for (int v = 0; v < cv.length; v++) cv[v] = name(varTok[k][v], "z", zBase, params);
+            out.add(shapes[k].withOperands(name(labelTok[k], "L", lBase, params), Arrays.asList(cv),
+                    name(targetTok[k], "L", lBase, params)));
+        }
+        return out;
+    }
+
+    private static String name(int tok, String prefix, int base, String[] params) {
+        if (tok == 0) return null;
+        if (tok > 0) return prefix + (base + tok);
+        return params[-tok - 1];
+    }
+}
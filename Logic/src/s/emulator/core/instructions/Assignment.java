@@ -9,25 +9,38 @@ import java.util.List;
 import java.util.Map;
 
 public final class Assignment implements Instruction {
+    /** Expands to ZERO_VARIABLE, GOTO_LABELs and basic instructions. */
+    public static final int DEGREE = 1 + Math.max(ZeroVariable.DEGREE, GotoLabel.DEGREE);
+
     private final String label;
     private final String destination;
     private final String source;
+    private final List<String> variables; // [destination, source], built once
 
     public Assignment(String label, String destination, String source) {
         this.label = label;
         this.destination = destination;
         this.source = source;
+        this.variables = List.of(destination, source);
     }
-    private Assignment() { this.label=null; this.destination=null; this.source=null; }
+    Assignment() { this.label=null; this.destination=null; this.source=null; this.variables=List.of(); }
 
     @Override public String getLabel() { return label; }
     @Override public int getCycles() { return 4; }
+    @Override public List<String> getVariables() { return variables; }
+    @Override public List<String> getReadVariables() { return List.of(source); }
+    @Override public List<String> getWrittenVariables() { return List.of(destination); }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new Assignment(label, variables.get(0), variables.get(1));
+    }
 
     @Override
     public void execute(ExecutionManager executionManager) {
         executionManager.addCycles(getCycles());
-        int val = executionManager.getVar(source);
-        executionManager.setVar(destination, val);
+        int val = executionManager.getOperand(1);
+        executionManager.setOperand(0, val);
         executionManager.incPC();
     }
     @Override
@@ -40,11 +53,17 @@ public final class Assignment implements Instruction {
         return new Assignment(label, variable, src.trim());
     }
 
+    @Override
+    public Map<String,String> xmlArguments() { return Map.of("assignedVariable", source); }
+
     @Override
     public boolean isBasic() {
         return false;
     }
 
+    @Override
+    public int degree() { return DEGREE; }
+
     @Override
     public List<Instruction> expand(ExpansionContext ctx) {
         List<Instruction> out = new ArrayList<>();
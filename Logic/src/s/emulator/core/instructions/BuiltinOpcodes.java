@@ -0,0 +1,23 @@
+package s.emulator.core.instructions;
+
+import s.emulator.core.OpcodeProvider;
+import s.emulator.core.OpcodeRegistry;
+
+/** The S-language instructions of this package, under their XML opcode names. */
+public final class BuiltinOpcodes implements OpcodeProvider {
+
+    @Override
+    public void register(OpcodeRegistry.Registrar r) {
+        r.add("INCREASE", Increase.class, new Increase()::buildFromXml);
+        r.add("DECREASE", Decrease.class, new Decrease()::buildFromXml);
+        r.add("NEUTRAL", Neutral.class, new Neutral()::buildFromXml);
+        r.add("JUMP_NOT_ZERO", JumpNotZero.class, new JumpNotZero()::buildFromXml);
+        r.add("ZERO_VARIABLE", ZeroVariable.class, new ZeroVariable()::buildFromXml);
+        r.add("GOTO_LABEL", GotoLabel.class, new GotoLabel()::buildFromXml);
+        r.add("ASSIGNMENT", Assignment.class, new Assignment()::buildFromXml);
+        r.add("CONSTANT_ASSIGNMENT", ConstantAssignment.class, new ConstantAssignment()::buildFromXml);
+        r.add("JUMP_ZERO", JumpZero.class, new JumpZero()::buildFromXml);
+        r.add("JUMP_EQUAL_CONSTANT", JumpEqualConstant.class, new JumpEqualConstant()::buildFromXml);
+        r.add("JUMP_EQUAL_VARIABLE", JumpEqualVariable.class, new JumpEqualVariable()::buildFromXml);
+    }
+}
@@ -7,26 +7,41 @@ import s.emulator.core.expansion.ExpansionContext;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalInt;
 
 public final class ConstantAssignment implements Instruction {
+    /** Expands to ZERO_VARIABLE plus k INCREASEs. */
+    public static final int DEGREE = 1 + ZeroVariable.DEGREE;
+
     private final String label;
     private final String var;
     private final int k;
+    private final List<String> variables; // [var], built once
 
     public ConstantAssignment(String label, String var, int k) {
         this.label = label;
         this.var = var;
+        this.variables = List.of(var);
         this.k = Math.max(0,k);
     }
-    private ConstantAssignment() { this.label=null; this.var=null; this.k=0; }
+    ConstantAssignment() { this.label=null; this.var=null; this.k=0; this.variables=List.of(); }
 
     @Override public String getLabel() { return label; }
     @Override public int getCycles() { return 2; }
+    @Override public List<String> getVariables() { return variables; }
+    @Override public List<String> getWrittenVariables() { return variables; }
+    @Override public List<String> getReadVariables() { return List.of(); }
+    @Override public OptionalInt getConstant() { return OptionalInt.of(k); }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new ConstantAssignment(label, variables.get(0), k);
+    }
 
     @Override
     public void execute(ExecutionManager executionManager) {
         executionManager.addCycles(getCycles());
-        int v = executionManager.getVar(var);
+        int v = executionManager.getOperand(0);
         while (v > 0) {
             v -= 1;
         }
@@ -34,7 +49,7 @@ public final class ConstantAssignment implements Instruction {
             v += 1;
         }
 
-        executionManager.setVar(var, v);
+        executionManager.setOperand(0, v);
         executionManager.incPC();
     }
     @Override
@@ -50,11 +65,17 @@ public final class ConstantAssignment implements Instruction {
         return new ConstantAssignment(label, variable, k);
     }
 
+    @Override
+    public Map<String,String> xmlArguments() { return Map.of("constantValue", String.valueOf(k)); }
+
     @Override
     public boolean isBasic() {
         return false;
     }
 
+    @Override
+    public int degree() { return DEGREE; }
+
     @Override
     public List<Instruction> expand(ExpansionContext ctx) {
         List<Instruction> out = new ArrayList<>();
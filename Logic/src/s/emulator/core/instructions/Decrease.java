@@ -3,25 +3,35 @@ package s.emulator.core.instructions;
 import s.emulator.core.ExecutionManager;
 import s.emulator.core.Instruction;
 
+import java.util.List;
 import java.util.Map;
 
 public final class Decrease implements Instruction {
     private final String label;
     private final String var;
+    private final List<String> variables; // [var], built once
 
     public Decrease(String label, String var) {
         this.label = label;
         this.var = var;
+        this.variables = List.of(var);
     }
-    private Decrease() { this.label = null; this.var = null; }
+    Decrease() { this.label = null; this.var = null; this.variables = List.of(); }
 
     @Override public String getLabel() { return label; }
     @Override public int getCycles() { return 1; }
+    @Override public List<String> getVariables() { return variables; }
+    @Override public List<String> getWrittenVariables() { return variables; }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new Decrease(label, variables.get(0));
+    }
 
     @Override
     public void execute(ExecutionManager em) {
-        int v = em.getVar(var);
-        em.setVar(var, Math.max(0, v - 1));
+        int v = em.getOperand(0);
+        em.setOperand(0, Math.max(0, v - 1));
         em.addCycles(getCycles());
         em.incPC();
     }
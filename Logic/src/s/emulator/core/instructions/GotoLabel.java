@@ -9,6 +9,9 @@ import java.util.List;
 import java.util.Map;
 
 public final class GotoLabel implements Instruction {
+    /** Expands to INCREASE + JUMP_NOT_ZERO (both basic). */
+    public static final int DEGREE = 1;
+
     private final String label;
     private final String targetLabel;
 
@@ -16,15 +19,21 @@ public final class GotoLabel implements Instruction {
         this.label = label;
         this.targetLabel = targetLabel;
     }
-    private GotoLabel() { this.label=null; this.targetLabel=null; }
+    GotoLabel() { this.label=null; this.targetLabel=null; }
 
     @Override public String getLabel() {return label;}
     @Override public int getCycles() {return 1;}
+    @Override public String getTargetLabel() { return targetLabel; }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new GotoLabel(label, targetLabel);
+    }
 
     @Override
     public void execute(ExecutionManager executionManager) {
         executionManager.addCycles(getCycles());
-        executionManager.jumpToLabel(targetLabel);
+        executionManager.jumpToTarget();
     }
 
     @Override
@@ -35,11 +44,17 @@ public final class GotoLabel implements Instruction {
         return new GotoLabel(label, tgt.trim());
     }
 
+    @Override
+    public Map<String,String> xmlArguments() { return Map.of("gotoLabel", targetLabel); }
+
     @Override
     public boolean isBasic() {
         return false;
     }
 
+    @Override
+    public int degree() { return DEGREE; }
+
     @Override
     public List<Instruction> expand(ExpansionContext ctx) {
         List<Instruction> out = new ArrayList<>();
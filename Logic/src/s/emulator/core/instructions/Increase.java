@@ -3,24 +3,34 @@ package s.emulator.core.instructions;
 import s.emulator.core.ExecutionManager;
 import s.emulator.core.Instruction;
 
+import java.util.List;
 import java.util.Map;
 
 public final class Increase implements Instruction {
     private final String label;     // label attached to THIS instruction (may be null)
     private final String var;
+    private final List<String> variables; // [var], built once
 
     public Increase(String label, String var) {
         this.label = label;
         this.var = var;
+        this.variables = List.of(var);
     }
-    private Increase() { this.label = null; this.var = null; }
+    Increase() { this.label = null; this.var = null; this.variables = List.of(); }
 
     @Override public String getLabel() { return label; }
     @Override public int getCycles() { return 1; }
+    @Override public List<String> getVariables() { return variables; }
+    @Override public List<String> getWrittenVariables() { return variables; }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new Increase(label, variables.get(0));
+    }
 
     @Override
     public void execute(ExecutionManager em) {
-        em.setVar(var, em.getVar(var) + 1);
+        em.setOperand(0, em.getOperand(0) + 1);
         em.addCycles(getCycles());
         em.incPC();
     }
@@ -7,29 +7,44 @@ import s.emulator.core.expansion.ExpansionContext;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalInt;
 
 public final class JumpEqualConstant implements Instruction {
+    /** k == 0 expands like JUMP_ZERO; otherwise to CONSTANT_ASSIGNMENT, GOTO_LABELs and basic instructions. */
+    public static final int DEGREE_ZERO = 1 + GotoLabel.DEGREE;
+    public static final int DEGREE = 1 + Math.max(ConstantAssignment.DEGREE, GotoLabel.DEGREE);
+
     private final String label;
     private final String var;
     private final int k;
     private final String targetLabel;
+    private final List<String> variables; // [var], built once
 
     public JumpEqualConstant(String label, String var, int k, String targetLabel) {
         this.label = label;
         this.var = var;
+        this.variables = List.of(var);
         this.k = k;
         this.targetLabel = targetLabel;
     }
-    private JumpEqualConstant() { this.label=null; this.var=null; this.k=0; this.targetLabel=null; }
+    JumpEqualConstant() { this.label=null; this.var=null; this.k=0; this.targetLabel=null; this.variables=List.of(); }
 
     @Override public String getLabel() {return label;}
     @Override public int getCycles() {return 2;}
+    @Override public String getTargetLabel() { return targetLabel; }
+    @Override public List<String> getVariables() { return variables; }
+    @Override public OptionalInt getConstant() { return OptionalInt.of(k); }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new JumpEqualConstant(label, variables.get(0), k, targetLabel);
+    }
 
     @Override
     public void execute(ExecutionManager executionManager) {
         executionManager.addCycles(getCycles());
 
-        int temp = executionManager.getVar(var);
+        int temp = executionManager.getOperand(0);
         boolean hitZeroBefore = false;
 
         for (int i = 0; i < k; i++) {
@@ -40,7 +55,7 @@ public final class JumpEqualConstant implements Instruction {
             temp -= 1;
         }
         if (!hitZeroBefore && temp == 0) {
-            executionManager.jumpToLabel(targetLabel);
+            executionManager.jumpToTarget();
         } else {
             executionManager.incPC();
         }
@@ -61,11 +76,17 @@ public final class JumpEqualConstant implements Instruction {
         return new JumpEqualConstant(label, variable, k, tgt.trim());
     }
 
+    @Override
+    public Map<String,String> xmlArguments() { return Map.of("JEConstantLabel", targetLabel, "constantValue", String.valueOf(k)); }
+
     @Override
     public boolean isBasic() {
         return false;
     }
 
+    @Override
+    public int degree() { return k == 0 ? DEGREE_ZERO : DEGREE; }
+
     @Override
     public List<Instruction> expand(ExpansionContext ctx) {
         List<Instruction> out = new ArrayList<>();
@@ -9,34 +9,46 @@ import java.util.List;
 import java.util.Map;
 
 public final class JumpEqualVariable implements Instruction {
+    /** Expands to ASSIGNMENTs, GOTO_LABELs and basic instructions. */
+    public static final int DEGREE = 1 + Math.max(Assignment.DEGREE, GotoLabel.DEGREE);
+
     private final String label;
     private final String Vara;
     private final String Varb;
     private final String targetLabel;
+    private final List<String> variables; // [Vara, Varb], built once
 
     public JumpEqualVariable(String label, String a, String b, String targetLabel) {
         this.label = label;
         this.Vara = a;
         this.Varb = b;
         this.targetLabel = targetLabel;
+        this.variables = List.of(a, b);
     }
-    private JumpEqualVariable() { this.label=null; this.Vara=null; this.Varb=null; this.targetLabel=null; }
+    JumpEqualVariable() { this.label=null; this.Vara=null; this.Varb=null; this.targetLabel=null; this.variables=List.of(); }
 
     @Override public String getLabel() { return label; }
     @Override public int getCycles() {  return 2; }
+    @Override public String getTargetLabel() { return targetLabel; }
+    @Override public List<String> getVariables() { return variables; }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new JumpEqualVariable(label, variables.get(0), variables.get(1), targetLabel);
+    }
 
     @Override
     public void execute(ExecutionManager executionManager) {
         executionManager.addCycles(getCycles());
-        int a = executionManager.getVar(Vara);
-        int b = executionManager.getVar(Varb);
+        int a = executionManager.getOperand(0);
+        int b = executionManager.getOperand(1);
 
         while (a > 0 && b > 0) {
             a--;
             b--;
         }
         if (a == 0 && b == 0) {
-            executionManager.jumpToLabel(targetLabel);
+            executionManager.jumpToTarget();
         } else {
             executionManager.incPC();
         }
@@ -54,11 +66,17 @@ public final class JumpEqualVariable implements Instruction {
         return new JumpEqualVariable(label, variable, other.trim(), tgt.trim());
     }
 
+    @Override
+    public Map<String,String> xmlArguments() { return Map.of("variableName", Varb, "JEVariableLabel", targetLabel); }
+
     @Override
     public boolean isBasic() {
         return false;
     }
 
+    @Override
+    public int degree() { return DEGREE; }
+
     @Override
     public List<Instruction> expand(ExpansionContext ctx) {
         List<Instruction> out = new ArrayList<>();
@@ -3,38 +3,39 @@ package s.emulator.core.instructions;
 import s.emulator.core.ExecutionManager;
 import s.emulator.core.Instruction;
 
+import java.util.List;
 import java.util.Map;
-import java.util.OptionalInt;
 
 public final class JumpNotZero implements Instruction {
     private final String label;      // label attached to THIS instruction (may be null)
     private final String var;        // V to test
     private final String target;     // label name to jump to (e.g., "L1" or "EXIT")
+    private final List<String> variables; // [var], built once
 
     public JumpNotZero(String label, String var, String targetLabel) {
         this.label = label;
         this.var = var;
+        this.variables = List.of(var);
         this.target = targetLabel;
     }
-    private JumpNotZero() { this.label=null; this.var=null; this.target=null; }
+    JumpNotZero() { this.label=null; this.var=null; this.target=null; this.variables=List.of(); }
 
     @Override public String getLabel() { return label; }
     @Override public int getCycles() { return 2; }
+    @Override public List<String> getVariables() { return variables; }
+    @Override public String getTargetLabel() { return target; }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new JumpNotZero(label, variables.get(0), targetLabel);
+    }
 
     @Override
     public void execute(ExecutionManager em) {
-        int v = em.getVar(var);
+        int v = em.getOperand(0);
         em.addCycles(getCycles());
         if (v != 0) {
-            if ("EXIT".equalsIgnoreCase(target)) {
-                em.stop();
-                return;
-            }
-            OptionalInt idx = em.getProgram().lookupLabel(target);
-            if (idx.isEmpty()) {
-                throw new IllegalStateException("Unknown label: " + target);
-            }
-            em.setPC(idx.getAsInt());
+            em.jumpToTarget();
         } else {
             em.incPC();
         }
@@ -48,4 +49,7 @@ public final class JumpNotZero implements Instruction {
             throw new IllegalArgumentException("JUMP_NOT_ZERO requires arg JNZLabel.");
         return new JumpNotZero(label, variable, tgt.trim());
     }
+
+    @Override
+    public Map<String,String> xmlArguments() { return Map.of("JNZLabel", target); }
 }
@@ -9,25 +9,37 @@ import java.util.List;
 import java.util.Map;
 
 public final class JumpZero implements Instruction {
+    /** Expands to basic instructions plus GOTO_LABEL. */
+    public static final int DEGREE = 1 + GotoLabel.DEGREE;
+
     private final String label;
     private final String var;
     private final String targetLabel;
+    private final List<String> variables; // [var], built once
 
     public JumpZero(String label, String var, String targetLabel) {
         this.label = label;
         this.var = var;
+        this.variables = List.of(var);
         this.targetLabel = targetLabel;
     }
-    private JumpZero() { this.label=null; this.var=null; this.targetLabel=null; }
+    JumpZero() { this.label=null; this.var=null; this.targetLabel=null; this.variables=List.of(); }
 
     @Override public String getLabel() {return label;}
     @Override public int getCycles() {return 2;}
+    @Override public String getTargetLabel() { return targetLabel; }
+    @Override public List<String> getVariables() { return variables; }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new JumpZero(label, variables.get(0), targetLabel);
+    }
 
     @Override
     public void execute(ExecutionManager executionManager) {
         executionManager.addCycles(getCycles());
-        if(executionManager.getVar(var) == 0){
-            executionManager.jumpToLabel(getLabel());
+        if(executionManager.getOperand(0) == 0){
+            executionManager.jumpToTarget();
         } else {
             executionManager.incPC();
         }
@@ -42,11 +54,17 @@ public final class JumpZero implements Instruction {
         return new JumpZero(label, variable, tgt.trim());
     }
 
+    @Override
+    public Map<String,String> xmlArguments() { return Map.of("JZLabel", targetLabel); }
+
     @Override
     public boolean isBasic() {
         return false;
     }
 
+    @Override
+    public int degree() { return DEGREE; }
+
     @Override
     public List<Instruction> expand(ExpansionContext ctx) {
         List<Instruction> out = new ArrayList<>();
@@ -3,25 +3,35 @@ package s.emulator.core.instructions;
 import s.emulator.core.ExecutionManager;
 import s.emulator.core.Instruction;
 
+import java.util.List;
 import java.util.Map;
 
 public final class Neutral implements Instruction {
     private final String label;
     private final String var; // per spec: "V <- V" (we’ll just read it and write back)
+    private final List<String> variables; // [var], built once
 
     public Neutral(String label, String var) {
         this.label = label;
         this.var = var;
+        this.variables = List.of(var);
     }
-    private Neutral() { this.label = null; this.var = null; }
+    Neutral() { this.label = null; this.var = null; this.variables = List.of(); }
 
 
     @Override public String getLabel() { return label; }
     @Override public int getCycles() { return 1; }
+    @Override public List<String> getVariables() { return variables; }
+    @Override public List<String> getWrittenVariables() { return variables; }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new Neutral(label, variables.get(0));
+    }
 
     @Override
     public void execute(ExecutionManager em) {
-        em.setVar(var, em.getVar(var)); // explicit self-assign
+        em.setOperand(0, em.getOperand(0)); // explicit self-assign
         em.addCycles(getCycles());
         em.incPC();
     }
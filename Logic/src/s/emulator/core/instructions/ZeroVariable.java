@@ -9,26 +9,39 @@ import java.util.List;
 import java.util.Map;
 
 public final class ZeroVariable implements Instruction {
+    /** Expands to basic instructions plus GOTO_LABEL. */
+    public static final int DEGREE = 1 + GotoLabel.DEGREE;
+
     private final String label;
     private final String var;
+    private final List<String> variables; // [var], built once
 
     public ZeroVariable(String label, String var) {
         this.label = label;
         this.var = var;
+        this.variables = List.of(var);
     }
-    private ZeroVariable() { this.label=null; this.var=null; }
+    ZeroVariable() { this.label=null; this.var=null; this.variables=List.of(); }
 
     @Override public String getLabel() { return label; }
     @Override public int getCycles() {return 1; }
+    @Override public List<String> getVariables() { return variables; }
+    @Override public List<String> getWrittenVariables() { return variables; }
+    @Override public List<String> getReadVariables() { return List.of(); }
+
+    @Override
+    public Instruction withOperands(String label, List<String> variables, String targetLabel) {
+        return new ZeroVariable(label, variables.get(0));
+    }
 
     @Override
     public void execute(ExecutionManager executionManager) {
         executionManager.addCycles(getCycles());
-        int v = executionManager.getVar(var);
+        int v = executionManager.getOperand(0);
         while (v > 0) {
             v -= 1;
         }
-        executionManager.setVar(var, v);
+        executionManager.setOperand(0, v);
         executionManager.incPC();
     }
     @Override
@@ -43,6 +56,9 @@ public final class ZeroVariable implements Instruction {
         return false;
     }
 
+    @Override
+    public int degree() { return DEGREE; }
+
     @Override
     public List<Instruction> expand(ExpansionContext ctx) {
         List<Instruction> out = new ArrayList<>();
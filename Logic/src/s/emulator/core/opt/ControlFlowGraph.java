@@ -0,0 +1,96 @@
+package s.emulator.core.opt;
+
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.instructions.GotoLabel;
+
+import java.util.List;
+
+/**
+ * Basic blocks of a {@link Program}: maximal runs of instructions entered only at the top and left only
+ * at the bottom. A block starts at PC 0, at every jump target and after every jump, so once a block is
+ * entered all of its instructions run, and its cycles can be charged in one go ({@link #cycles}).
+ *
+ * Successors are block ids, {@link Program#EXIT_PC} (including falling off the end) or
+ * {@link Program#NO_TARGET}.
+ */
+public final class ControlFlowGraph {
+
+    private final Program program;
+    private final int[] start;    // per block (+1 sentinel = program size)
+    private final int[] blockOf;  // per PC
+    private final long[] cycles;
+    private final int[] fall, jump;
+
+    private ControlFlowGraph(Program program) {
+        this.program = program;
+        List<Instruction> code = program.getInstructions();
+        int n = code.size();
+
+        boolean[] leader = new boolean[n + 1];
+        leader[0] = true;
+        for (int pc = 0; pc < n; pc++) {
+            int t = program.targetOf(pc);
+            if (t == Program.NO_TARGET) continue;
+            if (t >= 0) leader[t] = true;
+            leader[pc + 1] = true;
+        }
+        int blocks = 0;
+        for (int pc = 0; pc < n; pc++) if (leader[pc]) blocks++;
+
+        this.start = new int[blocks + 1];
+        this.blockOf = new int[n];
+        this.cycles = new long[blocks];
+        int b = -1;
+        for (int pc = 0; pc < n; pc++) {
+            if (leader[pc]) start[++b] = pc;
+            blockOf[pc] = b;
+            cycles[b] += code.get(pc).getCycles();
+        }
+        start[blocks] = n;
+
+        this.fall = new int[blocks];
+        this.jump = new int[blocks];
+        for (b = 0; b < blocks; b++) {
+            int last = start[b + 1] - 1;
+            int t = program.targetOf(last);
+            fall[b] = code.get(last) instanceof GotoLabel ? Program.NO_TARGET : blockAt(last + 1);
+            jump[b] = t == Program.NO_TARGET ? Program.NO_TARGET : blockAt(t);
+        }
+    }
+
+    public static ControlFlowGraph of(Program program) {
+        return new ControlFlowGraph(program);
+    }
+
+    public Program program() { return program; }
+
+    public int blockCount() { return cycles.length; }
+
+    /** Block containing {@code pc}. */
+    public int blockOf(int pc) { return blockOf[pc]; }
+
+    /** First PC of block {@code b}. */
+    public int start(int b) { return start[b]; }
+
+    /** One past the last PC of block {@code b}. */
+    public int end(int b) { return start[b + 1]; }
+
+    /** Sum of the cycles of every instruction in block {@code b}. */
+    public long cycles(int b) { return cycles[b]; }
+
+    /** Block run next when the last instruction of {@code b} doesn't jump. */
+    public int fallSuccessor(int b) { return fall[b]; }
+
+    /** Block run next when the last instruction of {@code b} jumps. */
+    public int jumpSuccessor(int b) { return jump[b]; }
+
+    /** Whether {@code pc} is the first instruction of its block. */
+    public boolean isBlockStart(int pc) {
+        return start[blockOf[pc]] == pc;
+    }
+
+    private int blockAt(int pc) {
+        return pc < 0 || pc >= blockOf.length ? Program.EXIT_PC : blockOf[pc];
+    }
+}
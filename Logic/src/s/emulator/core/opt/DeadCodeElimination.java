@@ -0,0 +1,168 @@
+package s.emulator.core.opt;
+
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.instructions.GotoLabel;
+import s.emulator.core.instructions.Neutral;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Removes instructions that can't affect a run's variables:
+ * <ul>
+ *   <li>{@code NEUTRAL} (V &lt;- V) and jumps whose target is the next instruction anyway are threaded
+ *       through: every edge into them is redirected to where they lead;</li>
+ *   <li>{@code GOTO_LABEL} is threaded to its target the same way;</li>
+ *   <li>whatever is then unreachable from PC 0 is dropped.</li>
+ * </ul>
+ * A cycle made only of such instructions (a program that never halts) keeps its first instruction.
+ * Cycles of threaded instructions are charged on the redirected edges, see {@link OptimizedProgram}.
+ */
+public final class DeadCodeElimination {
+
+    private static final byte VISITING = 1, DONE = 2;
+
+    private final Program program;
+    private final List<Instruction> code;
+    private final int n;
+    private final boolean[] skip;
+    private final int[] dest;   // per PC: first kept instruction reached by threading from it (itself if kept)
+    private final long[] cost;  // per PC: cycles of the threaded instructions on the way there
+    private final byte[] state;
+
+    private DeadCodeElimination(Program program) {
+        this.program = program;
+        this.code = program.getInstructions();
+        this.n = code.size();
+        this.skip = new boolean[n];
+        this.dest = new int[n];
+        this.cost = new long[n];
+        this.state = new byte[n];
+    }
+
+    public static OptimizedProgram run(Program program) {
+        return new DeadCodeElimination(program).optimize();
+    }
+
+    private OptimizedProgram optimize() {
+        for (int pc = 0; pc < n; pc++) {
+            Instruction ins = code.get(pc);
+            int target = program.targetOf(pc);
+            skip[pc] = ins instanceof Neutral
+                    || ins instanceof GotoLabel
+                    || (target != Program.NO_TARGET && norm(target) == norm(pc + 1));
+            dest[pc] = pc;
+        }
+        for (int pc = 0; pc < n; pc++) {
+            if (state[pc] != DONE) thread(pc);
+        }
+
+        // Reachability over kept instructions, following the threaded edges.
+        boolean[] reached = new boolean[n];
+        int[] stack = new int[n];
+        int sp = 0;
+        int entry = destOf(norm(0));
+        if (entry != Program.EXIT_PC) {
+            reached[entry] = true;
+            stack[sp++] = entry;
+        }
+        while (sp > 0) {
+            int pc = stack[--sp];
+            for (int s : new int[]{destOf(fallOf(pc)), destOf(takenOf(pc))}) {
+                if (s >= 0 && !reached[s]) {
+                    reached[s] = true;
+                    stack[sp++] = s;
+                }
+            }
+        }
+
+        int[] newIndex = new int[n];
+        int[] originalPc = new int[n];
+        int size = 0;
+        for (int pc = 0; pc < n; pc++) {
+            if (reached[pc]) {
+                newIndex[pc] = size;
+                originalPc[size++] = pc;
+            }
+        }
+        originalPc = Arrays.copyOf(originalPc, size);
+
+        int[] fallNext = new int[size], takenNext = new int[size];
+        long[] fallCost = new long[size], takenCost = new long[size];
+        for (int i = 0; i < size; i++) {
+            int pc = originalPc[i];
+            int fall = fallOf(pc), taken = takenOf(pc);
+            fallNext[i] = remap(fall, newIndex);
+            fallCost[i] = costOf(fall);
+            takenNext[i] = remap(taken, newIndex);
+            takenCost[i] = costOf(taken);
+        }
+        return new OptimizedProgram(program, originalPc, fallNext, fallCost, takenNext, takenCost,
+                remap(norm(0), newIndex), costOf(norm(0)));
+    }
+
+    /** Follows threaded instructions from {@code pc}, recording dest/cost for every PC on the way. */
+    private void thread(int pc) {
+        int[] path = new int[8];
+        int len = 0;
+        int cur = pc;
+        while (cur != Program.EXIT_PC && skip[cur] && state[cur] != DONE) {
+            if (state[cur] == VISITING) {
+                skip[cur] = false; // only threaded instructions on this cycle: keep its entry
+                break;
+            }
+            state[cur] = VISITING;
+            if (len == path.length) path = Arrays.copyOf(path, len * 2);
+            path[len++] = cur;
+            cur = skipTo(cur);
+        }
+        int d = destOf(cur);
+        long c = costOf(cur);
+        for (int i = len - 1; i >= 0; i--) {
+            int q = path[i];
+            if (skip[q]) {
+                c += code.get(q).getCycles();
+                dest[q] = d;
+                cost[q] = c;
+            } else {
+                d = q;
+                c = 0;
+            }
+            state[q] = DONE;
+        }
+    }
+
+    /** The single successor of a threaded instruction. */
+    private int skipTo(int pc) {
+        return code.get(pc) instanceof GotoLabel ? norm(program.targetOf(pc)) : norm(pc + 1);
+    }
+
+    /** Successor of a kept instruction when it does not jump ({@code NO_TARGET} for a kept GOTO). */
+    private int fallOf(int pc) {
+        return code.get(pc) instanceof GotoLabel ? Program.NO_TARGET : norm(pc + 1);
+    }
+
+    private int takenOf(int pc) {
+        int target = program.targetOf(pc);
+        return target == Program.NO_TARGET ? Program.NO_TARGET : norm(target);
+    }
+
+    /** Falling off the end is the same as jumping to EXIT. */
+    private int norm(int pc) {
+        return pc >= n ? Program.EXIT_PC : pc;
+    }
+
+    private int destOf(int pc) {
+        return pc < 0 ? pc : dest[pc];
+    }
+
+    private long costOf(int pc) {
+        return pc < 0 ? 0 : cost[pc];
+    }
+
+    private int remap(int pc, int[] newIndex) {
+        int d = destOf(pc);
+        return d < 0 ? d : newIndex[d];
+    }
+}
@@ -0,0 +1,74 @@
+package s.emulator.core.opt;
+
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+
+import java.util.List;
+
+/**
+ * A program with dead code removed, as control-flow edges over the surviving instructions.
+ *
+ * Instruction {@code i} is {@code source().getInstructions().get(originalPc(i))} and keeps its operands
+ * (so it runs on the source program's registers), but its successors are rewritten: {@link #fallNext} and
+ * {@link #takenNext} are indices into this program or {@link Program#EXIT_PC}. The cycles of every removed
+ * instruction an edge skips are charged on that edge ({@link #fallCost}, {@link #takenCost}), so a run
+ * still reports exactly the source program's cycle count.
+ */
+public final class OptimizedProgram {
+
+    private final Program source;
+    private final int[] originalPc;
+    private final int[] fallNext, takenNext;
+    private final long[] fallCost, takenCost;
+    private final int entry;
+    private final long entryCost;
+
+    OptimizedProgram(Program source, int[] originalPc, int[] fallNext, long[] fallCost,
+                     int[] takenNext, long[] takenCost, int entry, long entryCost) {
+        this.source = source;
+        this.originalPc = originalPc;
+        this.fallNext = fallNext;
+        this.fallCost = fallCost;
+        this.takenNext = takenNext;
+        this.takenCost = takenCost;
+        this.entry = entry;
+        this.entryCost = entryCost;
+    }
+
+    public Program source() { return source; }
+
+    /** Instructions left after optimization. */
+    public int size() { return originalPc.length; }
+
+    public Instruction instruction(int i) {
+        return source.getInstructions().get(originalPc[i]);
+    }
+
+    /** PC of instruction {@code i} in the source program. */
+    public int originalPc(int i) { return originalPc[i]; }
+
+    /** First instruction to run, or {@link Program#EXIT_PC} if the program does nothing observable. */
+    public int entry() { return entry; }
+
+    /** Cycles of the removed instructions before {@link #entry()}. */
+    public long entryCost() { return entryCost; }
+
+    /** Successor when instruction {@code i} does not jump, or {@link Program#NO_TARGET} if it always jumps. */
+    public int fallNext(int i) { return fallNext[i]; }
+
+    /** Extra cycles charged on the fall-through edge of {@code i}. */
+    public long fallCost(int i) { return fallCost[i]; }
+
+    /** Successor when instruction {@code i} jumps, or {@link Program#NO_TARGET} if it never jumps. */
+    public int takenNext(int i) { return takenNext[i]; }
+
+    /** Extra cycles charged on the jump edge of {@code i}. */
+    public long takenCost(int i) { return takenCost[i]; }
+
+    /** The surviving instructions, in source order. */
+    public List<Instruction> instructions() {
+        Instruction[] out = new Instruction[originalPc.length];
+        for (int i = 0; i < out.length; i++) out[i] = instruction(i);
+        return List.of(out);
+    }
+}
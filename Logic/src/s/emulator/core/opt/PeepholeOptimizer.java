@@ -0,0 +1,288 @@
+package s.emulator.core.opt;
+
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.SymbolTable;
+import s.emulator.core.instructions.Decrease;
+import s.emulator.core.instructions.Increase;
+import s.emulator.core.instructions.JumpNotZero;
+import s.emulator.core.instructions.Neutral;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rule-driven peephole optimizer for basic programs (INCREASE, DECREASE, NEUTRAL, JUMP_NOT_ZERO).
+ *
+ * {@code INC z; JNZ z L} on a z used only that way (what GOTO_LABEL expands to) is treated as an
+ * unconditional jump. The rules below then run to a fixed point, followed each time by removing code
+ * unreachable from the start:
+ * <ul>
+ *   <li>NEUTRAL is removed;</li>
+ *   <li>a jump to a GOTO is retargeted to where the GOTO leads (jump threading);</li>
+ *   <li>a jump that ends up where falling through would is removed (this covers {@code JNZ v L; GOTO L}
+ *       and GOTO to the next instruction);</li>
+ *   <li>{@code INC v; DEC v} cancels when nothing jumps to the DEC.</li>
+ * </ul>
+ * The result is a basic program with fresh labels that, on every input the source halts on, halts with the
+ * same y in no more cycles.
+ * Other variables may end differently: the removed GOTO temporaries share one z.
+ */
+public final class PeepholeOptimizer {
+
+    private static final int INC = 0, DEC = 1, NOP = 2, JNZ = 3, GOTO = 4;
+    private static final int CYCLE = -1; // dest() of a GOTO loop
+
+    /** One rewrite at live position {@code i}; returns true if it changed the code. */
+    @FunctionalInterface
+    interface Rule {
+        boolean apply(PeepholeOptimizer code, int i);
+    }
+
+    private static final List<Rule> RULES = List.of(
+            PeepholeOptimizer::dropNeutral,
+            PeepholeOptimizer::threadJump,
+            PeepholeOptimizer::dropJumpToNext,
+            PeepholeOptimizer::cancelIncDec);
+
+    private final Program source;
+    private final int n;          // node n is the exit
+    private final int[] op, var, target;
+    private final int[] fwd;      // fwd[i] == i while node i is live; deleted nodes forward to a later one
+    private final int[] incoming; // live jumps resolving to each live node
+
+    private PeepholeOptimizer(Program source) {
+        this.source = source;
+        List<Instruction> code = source.getInstructions();
+        this.n = code.size();
+        this.op = new int[n];
+        this.var = new int[n];
+        this.target = new int[n];
+        this.fwd = new int[n + 1];
+        this.incoming = new int[n + 1];
+        for (int pc = 0; pc < n; pc++) {
+            Instruction ins = code.get(pc);
+            if (ins instanceof Increase) op[pc] = INC;
+            else if (ins instanceof Decrease) op[pc] = DEC;
+            else if (ins instanceof Neutral) op[pc] = NOP;
+            else if (ins instanceof JumpNotZero) op[pc] = JNZ;
+            else throw new IllegalArgumentException("Peephole optimizer needs a basic program; instruction #"
+                    + (pc + 1) + " is " + ins.getClass().getSimpleName());
+            var[pc] = source.operandSlot(pc, 0);
+            int t = source.targetOf(pc);
+            target[pc] = t == Program.EXIT_PC ? n : t;
+            fwd[pc] = pc;
+        }
+        fwd[n] = n;
+    }
+
+    public static Program optimize(Program program) {
+        PeepholeOptimizer code = new PeepholeOptimizer(program);
+        code.findGotos();
+        code.countIncoming();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = code.live(0); i < code.n; i = code.live(i + 1)) {
+                for (Rule rule : RULES) {
+                    if (code.isLive(i) && rule.apply(code, i)) changed = true;
+                }
+            }
+            if (code.dropUnreachable()) changed = true;
+        }
+        return code.toProgram();
+    }
+
+    // ---- rules
+
+    private static boolean dropNeutral(PeepholeOptimizer c, int i) {
+        if (c.op[i] != NOP) return false;
+        c.delete(i);
+        return true;
+    }
+
+    private static boolean threadJump(PeepholeOptimizer c, int i) {
+        if (!c.isJump(i)) return false;
+        int now = c.live(c.target[i]);
+        int d = c.dest(now);
+        if (d == CYCLE || d == now) return false;
+        c.retarget(i, d);
+        return true;
+    }
+
+    /**
+     * Both ways out of {@code i} must reach the same d, also once {@code i} is gone: a GOTO chain from the
+     * next node that runs back into {@code i} would otherwise become a loop of GOTOs.
+     */
+    private static boolean dropJumpToNext(PeepholeOptimizer c, int i) {
+        if (!c.isJump(i)) return false;
+        int d = c.dest(c.target[i]);
+        if (d == CYCLE || d == i || d != c.dest(i + 1) || d != c.dest(i + 1, i)) return false;
+        c.incoming[c.live(c.target[i])]--;
+        c.delete(i);
+        return true;
+    }
+
+    private static boolean cancelIncDec(PeepholeOptimizer c, int i) {
+        int j = c.live(i + 1);
+        if (c.op[i] != INC || j == c.n || c.op[j] != DEC || c.var[j] != c.var[i] || c.incoming[j] != 0) return false;
+        c.delete(i);
+        c.delete(j);
+        return true;
+    }
+
+    // ---- IR
+
+    /**
+     * Marks {@code INC z; JNZ z L} as GOTO L when every use of z is such a pair and nothing jumps to
+     * the JNZ: then the jump is always taken and z's value never matters.
+     */
+    private void findGotos() {
+        boolean[] notGoto = new boolean[source.symbols().size()];
+        boolean[] jumpedTo = new boolean[n + 1];
+        for (int pc = 0; pc < n; pc++) {
+            if (op[pc] == JNZ) jumpedTo[target[pc]] = true;
+        }
+        for (int pc = 0; pc < n; pc++) {
+            int v = var[pc];
+            boolean pairStart = op[pc] == INC && pc + 1 < n && op[pc + 1] == JNZ && var[pc + 1] == v && !jumpedTo[pc + 1];
+            boolean pairEnd = op[pc] == JNZ && pc > 0 && op[pc - 1] == INC && var[pc - 1] == v && !jumpedTo[pc];
+            if (!pairStart && !pairEnd) notGoto[v] = true;
+        }
+        for (int v = 0; v < notGoto.length; v++) {
+            if (source.symbols().kindOf(v) != SymbolTable.Kind.Z) notGoto[v] = true;
+        }
+        for (int pc = 0; pc + 1 < n; pc++) {
+            if (op[pc] == INC && !notGoto[var[pc]] && op[pc + 1] == JNZ) {
+                op[pc] = GOTO;
+                target[pc] = target[pc + 1];
+                fwd[pc + 1] = pc + 2; // nothing jumps to the JNZ
+                pc++;
+            }
+        }
+    }
+
+    private void countIncoming() {
+        Arrays.fill(incoming, 0);
+        for (int i = live(0); i < n; i = live(i + 1)) {
+            if (isJump(i)) incoming[live(target[i])]++;
+        }
+    }
+
+    /** Removes every live node the start can't reach. */
+    private boolean dropUnreachable() {
+        boolean[] reached = new boolean[n + 1];
+        int[] stack = new int[n + 1];
+        int sp = 0;
+        stack[sp++] = live(0);
+        reached[stack[0]] = true;
+        while (sp > 0) {
+            int i = stack[--sp];
+            if (i == n) continue;
+            int fall = op[i] == GOTO ? -1 : live(i + 1);
+            int jump = isJump(i) ? live(target[i]) : -1;
+            for (int s : new int[]{fall, jump}) {
+                if (s >= 0 && !reached[s]) {
+                    reached[s] = true;
+                    stack[sp++] = s;
+                }
+            }
+        }
+        boolean changed = false;
+        for (int i = live(0); i < n; i = live(i + 1)) {
+            if (!reached[i]) {
+                delete(i);
+                changed = true;
+            }
+        }
+        if (changed) countIncoming();
+        return changed;
+    }
+
+    private boolean isJump(int i) {
+        return op[i] == JNZ || op[i] == GOTO;
+    }
+
+    private boolean isLive(int i) {
+        return fwd[i] == i;
+    }
+
+    /** First live node at or after {@code i} (path-compressing). */
+    private int live(int i) {
+        int r = i;
+        while (fwd[r] != r) r = fwd[r];
+        while (fwd[i] != r) {
+            int next = fwd[i];
+            fwd[i] = r;
+            i = next;
+        }
+        return r;
+    }
+
+    /** Where control really goes from node {@code i}: follows GOTOs; {@link #CYCLE} if they loop. */
+    private int dest(int i) {
+        return dest(i, -1);
+    }
+
+    /** As {@link #dest(int)}, but as if live node {@code without} were already deleted. */
+    private int dest(int i, int without) {
+        int d = skip(live(i), without);
+        for (int hops = 0; d < n && op[d] == GOTO; hops++) {
+            if (hops > n) return CYCLE;
+            d = skip(live(target[d]), without);
+        }
+        return d;
+    }
+
+    private int skip(int d, int without) {
+        return d == without ? live(without + 1) : d;
+    }
+
+    /** Deletes live node {@code i}: jumps to it now land on the next live node. */
+    private void delete(int i) {
+        fwd[i] = i + 1;
+        incoming[live(i + 1)] += incoming[i];
+        incoming[i] = 0;
+    }
+
+    private void retarget(int i, int to) {
+        incoming[live(target[i])]--;
+        target[i] = to;
+        incoming[to]++;
+    }
+
+    private Program toProgram() {
+        SymbolTable symbols = source.symbols();
+        String[] labels = new String[n + 1];
+        labels[n] = "EXIT";
+        int nextLabel = 0;
+        for (int i = live(0); i < n; i = live(i + 1)) {
+            if (isJump(i)) {
+                int t = live(target[i]);
+                if (labels[t] == null) labels[t] = "";
+            }
+        }
+        for (int i = live(0); i < n; i = live(i + 1)) {
+            if (labels[i] != null) labels[i] = "L" + (++nextLabel);
+        }
+
+        String gotoVar = "z" + (symbols.maxIndex(SymbolTable.Kind.Z) + 1);
+        List<Instruction> out = new ArrayList<>();
+        for (int i = live(0); i < n; i = live(i + 1)) {
+            String label = labels[i];
+            String v = symbols.nameOf(var[i]);
+            switch (op[i]) {
+                case INC -> out.add(new Increase(label, v));
+                case DEC -> out.add(new Decrease(label, v));
+                case NOP -> out.add(new Neutral(label, v));
+                case JNZ -> out.add(new JumpNotZero(label, v, labels[live(target[i])]));
+                default -> {
+                    out.add(new Increase(label, gotoVar));
+                    out.add(new JumpNotZero(null, gotoVar, labels[live(target[i])]));
+                }
+            }
+        }
+        return new Program(source.getName(), out);
+    }
+}
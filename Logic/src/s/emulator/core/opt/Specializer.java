@@ -0,0 +1,236 @@
+package s.emulator.core.opt;
+
+import s.emulator.core.ExecutionManager;
+import s.emulator.core.Instruction;
+import s.emulator.core.Program;
+import s.emulator.core.SymbolTable;
+import s.emulator.core.instructions.*;
+
+import java.util.*;
+
+/**
+ * Partial evaluation of a program on some of its inputs.
+ *
+ * The program first runs concretely for as long as each instruction reads only known variables (the
+ * fixed inputs, y and work variables, and anything written from them), so any prefix of loops over known
+ * values is simply pre-executed. The residual program then starts from that state: a prologue of
+ * CONSTANT_ASSIGNMENTs recreating it, a GOTO to the stopping point if needed, and the original
+ * instructions reachable from there. Branches on variables that keep a known value for the rest of the
+ * run are folded for reachability, and the arms they can never take are pointed at EXIT.
+ *
+ * Cycles spent by the prefix, minus those of the prologue, are the {@link Result#cycleOffset()}: the
+ * residual run with the remaining inputs, plus the offset, gives exactly the original y and cycles.
+ * The offset holds for the residual as returned, not for an expansion of it.
+ */
+public final class Specializer {
+
+    /** Longest prefix pre-executed; a longer one just stops there. */
+    public static final long MAX_PREFIX_STEPS = 1_000_000;
+
+    private static final int UNKNOWN = 0, TAKEN = 1, NOT_TAKEN = 2;
+
+    public static final class Result {
+        private final Program residual;
+        private final long cycleOffset;
+        private final long prefixSteps;
+
+        Result(Program residual, long cycleOffset, long prefixSteps) {
+            this.residual = residual;
+            this.cycleOffset = cycleOffset;
+            this.prefixSteps = prefixSteps;
+        }
+
+        public Program residual() { return residual; }
+
+        /** Cycles to add to a run of {@link #residual()}; may be negative. */
+        public long cycleOffset() { return cycleOffset; }
+
+        /** Instructions executed ahead of time. */
+        public long prefixSteps() { return prefixSteps; }
+
+        /** Charges the offset to {@code em} after it ran the residual; returns the original's total cycles. */
+        public long applyOffset(ExecutionManager em) {
+            em.offsetCycles(cycleOffset);
+            return em.getTotalCycles();
+        }
+    }
+
+    private final Program program;
+    private final List<Instruction> code;
+    private final int n;
+    private final int[] regs;
+    private boolean[] constant;
+
+    private Specializer(Program program, int[] regs) {
+        this.program = program;
+        this.code = program.getInstructions();
+        this.n = code.size();
+        this.regs = regs;
+    }
+
+    /** Specializes {@code program} for the input values in {@code fixed} (names x1, x2, ...). */
+    public static Result specialize(Program program, Map<String, Integer> fixed) {
+        SymbolTable symbols = program.symbols();
+        List<Instruction> code = program.getInstructions();
+        int n = code.size();
+
+        ExecutionManager em = new ExecutionManager(program);
+        boolean[] known = new boolean[symbols.size()];
+        for (int s = 0; s < known.length; s++) known[s] = symbols.kindOf(s) != SymbolTable.Kind.X;
+        fixed.forEach((name, value) -> {
+            if (SymbolTable.kindOf(name) != SymbolTable.Kind.X) {
+                throw new IllegalArgumentException("Only inputs (x1, x2, ...) can be fixed: " + name);
+            }
+            em.setVar(name, value);
+            int s = symbols.slotOf(name);
+            if (s >= 0) known[s] = true;
+        });
+
+        int[][] reads = new int[n][], writes = new int[n][];
+        for (int pc = 0; pc < n; pc++) {
+            Instruction ins = code.get(pc);
+            boolean identity = ins instanceof Neutral;
+            reads[pc] = identity ? new int[0] : slots(symbols, ins.getReadVariables());
+            writes[pc] = identity ? new int[0] : slots(symbols, ins.getWrittenVariables());
+        }
+
+        // Pre-execute while everything read is known.
+        long steps = 0;
+        while (em.isRunning() && em.getPC() >= 0 && em.getPC() < n && steps < MAX_PREFIX_STEPS) {
+            int pc = em.getPC();
+            if (!allKnown(reads[pc], known)) break;
+            code.get(pc).execute(em);
+            for (int w : writes[pc]) known[w] = true;
+            steps++;
+        }
+        int stop = em.getPC();
+        boolean exited = !em.isRunning() || stop < 0 || stop >= n;
+
+        Specializer sp = new Specializer(program, em.registers());
+        boolean[] reached = new boolean[n];
+        if (!exited) {
+            // Constants: known now and never written again. Dropping one can only make more code reachable.
+            sp.constant = known.clone();
+            boolean changed = true;
+            while (changed) {
+                reached = sp.reach(stop);
+                changed = false;
+                for (int pc = 0; pc < n; pc++) {
+                    if (!reached[pc]) continue;
+                    for (int w : writes[pc]) {
+                        if (sp.constant[w]) {
+                            sp.constant[w] = false;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Instruction> out = new ArrayList<>();
+        for (int s : symbols.displayOrder()) {
+            if (known[s] && sp.regs[s] != 0) out.add(new ConstantAssignment(null, symbols.nameOf(s), sp.regs[s]));
+        }
+        int first = 0;
+        while (first < n && !reached[first]) first++;
+        String entryLabel = null;
+        if (!exited && first != stop) {
+            String own = code.get(stop).getLabel();
+            entryLabel = sp.isFirstDefinition(own, stop) ? own : "L" + (symbols.maxLabelIndex() + 1);
+            out.add(new GotoLabel(null, entryLabel));
+        }
+        long prologueCycles = 0;
+        for (Instruction ins : out) prologueCycles += ins.getCycles();
+
+        for (int pc = first; pc < n; pc++) {
+            if (!reached[pc]) continue;
+            Instruction ins = code.get(pc);
+            String label = pc == stop && entryLabel != null ? entryLabel
+                    : sp.isFirstDefinition(ins.getLabel(), pc) ? ins.getLabel() : null;
+            String target = ins.getTargetLabel();
+            if (target != null && sp.outcome(pc) == NOT_TAKEN) target = "EXIT";
+            out.add(Objects.equals(label, ins.getLabel()) && Objects.equals(target, ins.getTargetLabel())
+                    ? ins : rename(ins, label, target));
+        }
+        return new Result(new Program(program.getName(), out), em.getTotalCycles() - prologueCycles, steps);
+    }
+
+    /** PCs reachable from {@code start}, not following jump arms that constants rule out. */
+    private boolean[] reach(int start) {
+        boolean[] reached = new boolean[n];
+        int[] stack = new int[n];
+        int sp = 0;
+        reached[start] = true;
+        stack[sp++] = start;
+        while (sp > 0) {
+            int pc = stack[--sp];
+            int outcome = outcome(pc);
+            int fall = outcome == TAKEN ? -1 : pc + 1;
+            int target = program.targetOf(pc);
+            int jump = outcome == NOT_TAKEN ? -1 : target;
+            for (int s : new int[]{fall, jump}) {
+                if (s >= 0 && s < n && !reached[s]) {
+                    reached[s] = true;
+                    stack[sp++] = s;
+                }
+            }
+        }
+        return reached;
+    }
+
+    /** Whether the instruction at {@code pc} jumps, when its operands are constants. */
+    private int outcome(int pc) {
+        Instruction ins = code.get(pc);
+        if (program.targetOf(pc) == Program.NO_TARGET) return NOT_TAKEN;
+        if (ins instanceof GotoLabel) return TAKEN;
+        boolean jumps;
+        if (ins instanceof JumpNotZero) {
+            if (!isConstant(pc, 0)) return UNKNOWN;
+            jumps = value(pc, 0) != 0;
+        } else if (ins instanceof JumpZero) {
+            if (!isConstant(pc, 0)) return UNKNOWN;
+            jumps = value(pc, 0) == 0;
+        } else if (ins instanceof JumpEqualConstant) {
+            if (!isConstant(pc, 0)) return UNKNOWN;
+            jumps = value(pc, 0) == ins.getConstant().getAsInt();
+        } else if (ins instanceof JumpEqualVariable) {
+            if (!isConstant(pc, 0) || !isConstant(pc, 1)) return UNKNOWN;
+            jumps = value(pc, 0) == value(pc, 1);
+        } else {
+            return UNKNOWN;
+        }
+        return jumps ? TAKEN : NOT_TAKEN;
+    }
+
+    private boolean isConstant(int pc, int operand) {
+        return constant[program.operandSlot(pc, operand)];
+    }
+
+    private int value(int pc, int operand) {
+        return regs[program.operandSlot(pc, operand)];
+    }
+
+    /** Kept labels must still resolve to the same instruction: only the first definition keeps its name. */
+    private boolean isFirstDefinition(String label, int pc) {
+        return label != null && !label.isBlank() && program.lookupLabel(label).orElse(-1) == pc;
+    }
+
+    private static Instruction rename(Instruction ins, String label, String target) {
+        try {
+            return ins.withOperands(label, ins.getVariables(), target);
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalArgumentException("Cannot specialize: " + e.getMessage(), e);
+        }
+    }
+
+    private static int[] slots(SymbolTable symbols, List<String> names) {
+        int[] out = new int[names.size()];
+        for (int i = 0; i < out.length; i++) out[i] = symbols.slotOf(names.get(i));
+        return out;
+    }
+
+    private static boolean allKnown(int[] slots, boolean[] known) {
+        for (int s : slots) if (s < 0 || !known[s]) return false;
+        return true;
+    }
+}
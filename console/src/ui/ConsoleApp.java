@@ -1,18 +1,30 @@
 package ui;
 
 import s.emulator.core.*;
-import s.emulator.core.expansion.ExpansionContext;
+import s.emulator.core.engine.EngineKind;
+import s.emulator.core.engine.ExecutionEngine;
+import s.emulator.core.engine.LazyExpansionEngine;
+import s.emulator.core.engine.OptimizedEngine;
+import s.emulator.core.engine.Profile;
+import s.emulator.core.engine.ProfilingEngine;
 
 import java.io.File;
-import java.lang.reflect.Field;
 import java.util.*;
 
 import static ui.ExpandPrinter.printExpandedHorizontally;
 
 public class ConsoleApp {
 
+    private static final int PROFILE_LINES = 10;
+    // -Ds.emulator.subprogramCache=N: memoize library calls across runs in an N-entry LRU cache
+    private static final String SUBPROGRAM_CACHE_PROPERTY = "s.emulator.subprogramCache";
+
     private Program current;
+    private EngineKind engineKind = EngineKind.INTERPRETER;
+    private ExecutionEngine engine = engineKind.create();
     private final List<RunRecord> history = new ArrayList<>();
+    private final ProgramLibrary library = new ProgramLibrary();
+    private final SubprogramCache subprogramCache = newSubprogramCache();
 
 
     public final class RunRecord {
@@ -47,7 +59,10 @@ public class ConsoleApp {
                 3) Run program
                 4) Run with degree
                 5) Show history/statistics
-                6) Close program
+                6) Select execution engine
+                7) Run with degree (lazy expansion)
+                8) Load function library (directory)
+                9) Close program
                 """);
             System.out.print("> ");
             String choice = sc.nextLine().trim();
@@ -55,10 +70,13 @@ public class ConsoleApp {
                 switch (choice) {
                     case "1" -> doLoad(sc);
                     case "2" -> doShow();
-                    case "3" -> doRun(sc, 0);          // quiet
+                    case "3" -> doRun(sc, 0, false);   // quiet
                     case "4" -> doRunWithDegree(sc);   // quiet
                     case "5" -> doHistory();
-                    case "6" -> System.exit(0);
+                    case "6" -> doSelectEngine(sc);
+                    case "7" -> doRunLazy(sc);
+                    case "8" -> doLoadLibrary(sc);
+                    case "9" -> System.exit(0);
                     default -> System.out.println("Unknown option");
                 }
             } catch (Exception e) {
@@ -73,19 +91,44 @@ public class ConsoleApp {
     }
 
     private void doLoad(Scanner sc) throws Exception {
-        System.out.print("Enter XML path: ");
+        System.out.print("Enter program path (.xml or .sbin): ");
         String path = sc.nextLine().trim();
-        current = new XmlProgramLoader().load(new File(path));
+        current = ProgramFiles.load(new File(path));
         history.clear(); // new program -> reset history
         System.out.println("Loaded program: " + current.getName());
     }
 
+    private void doLoadLibrary(Scanner sc) throws Exception {
+        System.out.print("Enter library directory: ");
+        String path = sc.nextLine().trim();
+        Map<java.nio.file.Path, String> failures = library.loadDirectory(new File(path).toPath());
+        failures.forEach((f, why) -> System.out.println("  skipped " + f.getFileName() + ": " + why));
+        System.out.println("Library: " + library.size() + " program(s) " + library.names());
+        if (subprogramCache != null) subprogramCache.clear(); // entries of replaced programs would never hit again
+    }
+
+    private static SubprogramCache newSubprogramCache() {
+        int entries = Integer.getInteger(SUBPROGRAM_CACHE_PROPERTY, 0);
+        return entries > 0 ? new SubprogramCache(entries) : null;
+    }
+
     private void doShow() {
         needProgram();
         var code = current.getInstructions();
         ProgramPrinter.printProgram(current, code);
     }
 
+    private void doSelectEngine(Scanner sc) {
+        EngineKind[] kinds = EngineKind.values();
+        for (int i = 0; i < kinds.length; i++) {
+            System.out.printf("%d) %s%s%n", i + 1, kinds[i], kinds[i] == engineKind ? " (current)" : "");
+        }
+        System.out.print("Pick engine [1.." + kinds.length + "]: ");
+        engineKind = kinds[parseIntInRange(sc.nextLine(), 1, kinds.length) - 1];
+        engine = engineKind.create();
+        System.out.println("Engine: " + engineKind);
+    }
+
     private void doRunWithDegree(Scanner sc) {
         needProgram();
         int max = current.maxExpansionDegree();
@@ -97,14 +140,23 @@ public class ConsoleApp {
         System.out.println("\nExpanded (horizontal) to degree " + d + ":");
         printExpandedHorizontally(current, d);
 
-        doRun(sc, d); // quiet run (results only)
+        doRun(sc, d, false); // quiet run (results only)
+    }
+
+    // Same results as "Run with degree", but only the instructions the run reaches get expanded
+    private void doRunLazy(Scanner sc) {
+        needProgram();
+        int max = current.maxExpansionDegree();
+        System.out.print("Pick degree [0.." + max + "]: ");
+        doRun(sc, parseIntInRange(sc.nextLine(), 0, max), true);
     }
 
-    private void doRun(Scanner sc, int degree) {
+    private void doRun(Scanner sc, int degree, boolean lazy) {
         needProgram();
 
         // Expand first so we can compute exactly which inputs this run needs
-        Program toRun = current.expandToDegree(degree);
+        // (expansion never introduces new x's, so the lazy path can use the original program)
+        Program toRun = lazy ? current : current.expandToDegree(degree);
 
         // Collect the x-variables used by THIS expanded program (sorted: x1,x2,...)
         List<String> usedXs = collectInputVars(toRun.getInstructions());
@@ -114,16 +166,26 @@ public class ConsoleApp {
 
         // Execute
         ExecutionManager em = new ExecutionManager(toRun);
+        em.setFunctionResolver(library);
+        em.setResultCache(subprogramCache);
         for (int i = 0; i < usedXs.size(); i++) {
             em.setVar(usedXs.get(i), values.get(i));
         }
-        Interpreter.run(em);
+        (lazy ? new LazyExpansionEngine(degree) : engine).run(em);
 
         // Results only
         System.out.println("y = " + em.getVar("y"));
         System.out.println("Variables:");
         em.snapshotVars().forEach((k, v) -> System.out.println("  " + k + " = " + v));
         System.out.println("Total cycles: " + em.getTotalCycles());
+        if (subprogramCache != null) System.out.println("Subprogram cache: " + subprogramCache);
+        if (!lazy && engine instanceof OptimizedEngine opt) {
+            System.out.println("Instructions: " + toRun.getInstructions().size()
+                    + " (" + opt.optimized(toRun).size() + " after dead-code elimination)");
+        }
+        if (!lazy && engine instanceof ProfilingEngine profiler) {
+            printProfile(profiler.lastProfile(), degree);
+        }
 
         // Save run in history
         history.add(new RunRecord(
@@ -136,6 +198,26 @@ public class ConsoleApp {
         ));
     }
 
+    // Hottest instructions of the last run; for an expanded run also summed per original instruction
+    private void printProfile(Profile profile, int degree) {
+        System.out.println("Profile (top " + PROFILE_LINES + " by cycles):");
+        printHottest(profile);
+        if (degree > 0) {
+            System.out.println("By original instruction:");
+            printHottest(profile.byOrigin(current, current.provenance(degree)));
+        }
+    }
+
+    private static void printHottest(Profile profile) {
+        long total = Math.max(1, profile.totalCycles());
+        var code = profile.program().getInstructions();
+        for (int pc : profile.hottest(PROFILE_LINES)) {
+            System.out.printf("  %-45s x%-8d %8d cycles (%5.1f%%)%n",
+                    ProgramPrinter.formatOne(pc + 1, code.get(pc)), profile.executions(pc),
+                    profile.cycles(pc), 100.0 * profile.cycles(pc) / total);
+        }
+    }
+
     private void doHistory() {
         needProgram();
         if (history.isEmpty()) {
@@ -166,13 +248,8 @@ public class ConsoleApp {
     private static List<String> collectInputVars(List<Instruction> code) {
         TreeSet<String> set = new TreeSet<>(Comparator.comparingInt(ConsoleApp::xIndex));
         for (Instruction ins : code) {
-            for (Field f : ins.getClass().getDeclaredFields()) {
-                if (f.getType() != String.class) continue;
-                f.setAccessible(true);
-                try {
-                    Object v = f.get(ins);
-                    if (v instanceof String s && s.startsWith("x")) set.add(s);
-                } catch (Exception ignore) {}
+            for (String v : ins.getVariables()) {
+                if (v.startsWith("x")) set.add(v);
             }
         }
         return new ArrayList<>(set);
@@ -229,7 +306,7 @@ public class ConsoleApp {
         int max = 0;
         for (int i = 0; i < code.size(); i++) {
             Instruction ins = code.get(i);
-            int deg = instructionDegree(current, ins); // fresh ctx per origin
+            int deg = ins.degree();
             max = Math.max(max, deg);
             // Show the exact UI line + degree
             System.out.printf("%s   -- degree=%d%n",
@@ -239,20 +316,6 @@ public class ConsoleApp {
         System.out.println("Max degree (Program.maxExpansionDegree()): " + current.maxExpansionDegree());
     }
 
-    private static int instructionDegree(Program p, Instruction ins) {
-        return degreeOf(ins, ExpansionContext.fromProgram(p));
-    }
-
-    /** Degree = how many expansion rounds until this tree becomes all basic. */
-    private static int degreeOf(Instruction ins, ExpansionContext ctx) {
-        if (ins.isBasic()) return 0;
-        int max = 0;
-        for (Instruction child : ins.expand(ctx)) {
-            max = Math.max(max, degreeOf(child, ctx));
-        }
-        return 1 + max;
-    }
-
     private void debugIsBasicFlags() {
         needProgram();
         var code = current.getInstructions();
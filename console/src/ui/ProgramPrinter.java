@@ -12,57 +12,35 @@ public class ProgramPrinter {
     static {
         // BASIC
         RENDERERS.put(Increase.class, ins -> {
-            var i = (Increase) ins; String v = get(i,"var");
+            String v = var(ins, 0);
             return v + " <- " + v + " + 1";
         });
         RENDERERS.put(Decrease.class, ins -> {
-            var i = (Decrease) ins; String v = get(i,"var");
+            String v = var(ins, 0);
             return v + " <- " + v + " - 1";
         });
         RENDERERS.put(Neutral.class, ins -> {
-            var i = (Neutral) ins; String v = get(i,"var");
+            String v = var(ins, 0);
             return v + " <- " + v;
         });
-        RENDERERS.put(JumpNotZero.class, ins -> {
-            var i = (JumpNotZero) ins;
-            return "IF " + get(i,"var") + " != 0 GOTO " + get(i,"target");
-        });
+        RENDERERS.put(JumpNotZero.class, ins ->
+                "IF " + var(ins, 0) + " != 0 GOTO " + ins.getTargetLabel());
 
         // SYNTHETIC (non-expanded view)
-        RENDERERS.put(ZeroVariable.class, ins -> """
-            """.trim()); // filled below; we use reflection since your fields are private
-        RENDERERS.put(ConstantAssignment.class, ins -> {
-            var i = (ConstantAssignment) ins;
-            return get(i,"var") + " <- " + getInt(i,"k");
-        });
-        RENDERERS.put(Assignment.class, ins -> {
-            var i = (Assignment) ins;
-            return get(i,"destination") + " <- " + get(i,"source");
-        });
-        RENDERERS.put(GotoLabel.class, ins -> {
-            var i = (GotoLabel) ins;
-            return "GOTO " + get(i,"targetLabel");
-        });
-        RENDERERS.put(JumpZero.class, ins -> {
-            var i = (JumpZero) ins;
-            return "IF " + get(i,"var") + " = 0 GOTO " + get(i,"targetLabel");
-        });
-        RENDERERS.put(JumpEqualConstant.class, ins -> {
-            var i = (JumpEqualConstant) ins;
-            return "IF " + get(i,"var") + " = " + getInt(i,"k") + " GOTO " + get(i,"targetLabel");
-        });
-        RENDERERS.put(JumpEqualVariable.class, ins -> {
-            var i = (JumpEqualVariable) ins;
-            return "IF " + get(i,"Vara") + " = " + get(i,"Varb") + " GOTO " + get(i,"targetLabel");
-        });
-    }
-
-    static {
-        // ZeroVariable renderer delayed init to avoid long lambda above
-        RENDERERS.put(ZeroVariable.class, ins -> {
-            var i = (ZeroVariable) ins;
-            return get(i,"var") + " <- 0";
-        });
+        RENDERERS.put(ZeroVariable.class, ins ->
+                var(ins, 0) + " <- 0");
+        RENDERERS.put(ConstantAssignment.class, ins ->
+                var(ins, 0) + " <- " + constant(ins));
+        RENDERERS.put(Assignment.class, ins ->
+                var(ins, 0) + " <- " + var(ins, 1));
+        RENDERERS.put(GotoLabel.class, ins ->
+                "GOTO " + ins.getTargetLabel());
+        RENDERERS.put(JumpZero.class, ins ->
+                "IF " + var(ins, 0) + " = 0 GOTO " + ins.getTargetLabel());
+        RENDERERS.put(JumpEqualConstant.class, ins ->
+                "IF " + var(ins, 0) + " = " + constant(ins) + " GOTO " + ins.getTargetLabel());
+        RENDERERS.put(JumpEqualVariable.class, ins ->
+                "IF " + var(ins, 0) + " = " + var(ins, 1) + " GOTO " + ins.getTargetLabel());
     }
 
     public static void printProgram(Program program, List<Instruction> code) {
@@ -89,17 +67,12 @@ public class ProgramPrinter {
         return ins.getClass().getSimpleName();
     }
 
-    /** Collect all x_i referenced anywhere in the code (by scanning String fields). */
+    /** Collect all x_i referenced anywhere in the code. */
     private static List<String> inputsUsed(List<Instruction> code) {
         var set = new TreeSet<>(Comparator.comparingInt(ProgramPrinter::xIndex));
         for (var ins : code) {
-            for (var f : ins.getClass().getDeclaredFields()) {
-                if (f.getType() != String.class) continue;
-                f.setAccessible(true);
-                try {
-                    Object v = f.get(ins);
-                    if (v instanceof String s && s.startsWith("x")) set.add(s);
-                } catch (Exception ignore) {}
+            for (String v : ins.getVariables()) {
+                if (v.startsWith("x")) set.add(v);
             }
         }
         return new ArrayList<>(set);
@@ -113,12 +86,7 @@ public class ProgramPrinter {
         for (var ins : code) {
             String L = ins.getLabel();
             if (L != null && !L.isBlank()) set.add(L);
-
-            if (ins instanceof JumpNotZero jnz && "EXIT".equalsIgnoreCase(get(jnz,"target"))) hasExit = true;
-            if (ins instanceof GotoLabel gl && "EXIT".equalsIgnoreCase(get(gl,"targetLabel"))) hasExit = true;
-            if (ins instanceof JumpZero jz && "EXIT".equalsIgnoreCase(get(jz,"targetLabel"))) hasExit = true;
-            if (ins instanceof JumpEqualConstant jec && "EXIT".equalsIgnoreCase(get(jec,"targetLabel"))) hasExit = true;
-            if (ins instanceof JumpEqualVariable jev && "EXIT".equalsIgnoreCase(get(jev,"targetLabel"))) hasExit = true;
+            if ("EXIT".equalsIgnoreCase(ins.getTargetLabel())) hasExit = true;
         }
         var out = new ArrayList<>(set);
         if (hasExit) out.add("EXIT");
@@ -130,14 +98,12 @@ public class ProgramPrinter {
         return String.format("%-5s", L);
     }
 
-    // reflect helpers (keeps UI decoupled from core field visibility)
-    private static String get(Object o, String field){
-        try { var f = o.getClass().getDeclaredField(field); f.setAccessible(true); return (String) f.get(o); }
-        catch (Exception e) { return "?"; }
+    private static String var(Instruction ins, int i) {
+        List<String> vars = ins.getVariables();
+        return i < vars.size() ? vars.get(i) : "?";
     }
-    private static int getInt(Object o, String field){
-        try { var f = o.getClass().getDeclaredField(field); f.setAccessible(true); return f.getInt(o); }
-        catch (Exception e) { return -1; }
+    private static int constant(Instruction ins) {
+        return ins.getConstant().orElse(-1);
     }
 
     public static String formatOne(int number, Instruction ins) {